@@ -0,0 +1,70 @@
+package com.knowledgeshare.completablefuture.benchmark;
+
+import com.knowledgeshare.completablefuture.combinators.Futures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * allOf/anyOf over N futures (Examples.allOf and Examples.anyOf), compared with the typed combinators in
+ * {@link Futures}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregationBenchmark {
+
+    @Param({"3", "16", "128"})
+    public int futures;
+
+    @Benchmark
+    public int allOfThenJoin(ExecutorState state) {
+        List<CompletableFuture<Integer>> started = start(state);
+        CompletableFuture.allOf(started.toArray(new CompletableFuture[0])).join();
+
+        int sum = 0;
+        for (CompletableFuture<Integer> future : started) {
+            sum += future.join();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public List<Integer> typedAllOf(ExecutorState state) {
+        return Futures.allOf(start(state)).join();
+    }
+
+    @Benchmark
+    public Object anyOf(ExecutorState state) {
+        return CompletableFuture.anyOf(start(state).toArray(new CompletableFuture[0])).join();
+    }
+
+    @Benchmark
+    public Integer firstOf(ExecutorState state) {
+        return Futures.firstOf(start(state)).join();
+    }
+
+    private List<CompletableFuture<Integer>> start(ExecutorState state) {
+        List<CompletableFuture<Integer>> started = new ArrayList<>(futures);
+        for (int i = 0; i < futures; i++) {
+            int value = i;
+            started.add(CompletableFuture.supplyAsync(() -> value, state.executor));
+        }
+        return started;
+    }
+}
@@ -0,0 +1,57 @@
+package com.knowledgeshare.completablefuture.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a thread hop: thenApply runs on whichever thread completed the previous stage, thenApplyAsync always
+ * submits a new task to the executor (see Examples.thenApplyCallback and Examples.thenApplyAsync).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncHopBenchmark {
+
+    private String name = "Almarie";
+
+    @Benchmark
+    public String completedThenApply() {
+        // Baseline without any executor involved
+        return CompletableFuture.completedFuture(name).thenApply(result -> "Hello " + result).join();
+    }
+
+    @Benchmark
+    public String thenApply(ExecutorState state) {
+        return CompletableFuture.supplyAsync(() -> name, state.executor)
+                .thenApply(result -> "Hello " + result)
+                .join();
+    }
+
+    @Benchmark
+    public String thenApplyAsync(ExecutorState state) {
+        return CompletableFuture.supplyAsync(() -> name, state.executor)
+                .thenApplyAsync(result -> "Hello " + result, state.executor)
+                .join();
+    }
+
+    @Benchmark
+    public String thenApplyChained(ExecutorState state) {
+        return CompletableFuture.supplyAsync(() -> name, state.executor)
+                .thenApply(result -> "Hello " + result)
+                .thenApply(result -> result + "! How are you?")
+                .join();
+    }
+}
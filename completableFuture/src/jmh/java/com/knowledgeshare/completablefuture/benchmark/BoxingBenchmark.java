@@ -0,0 +1,62 @@
+package com.knowledgeshare.completablefuture.benchmark;
+
+import com.knowledgeshare.completablefuture.primitive.DoubleFuture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The BMI of Examples.thenCombineCallBack, weight and height from two async calls combined with thenCombine, on
+ * {@code CompletableFuture<Double>} vs {@link DoubleFuture}, plus a DoubleFuture combine fed by CompletableFutures to
+ * show what converting at the edges costs. Run with {@code -prof gc} to compare the allocation per BMI.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoxingBenchmark {
+
+    private double weightInKg = 65.0;
+    private double heightInCm = 177.8;
+
+    @Benchmark
+    public double boxed(ExecutorState state) {
+        CompletableFuture<Double> weight = CompletableFuture.supplyAsync(() -> weightInKg, state.executor);
+        CompletableFuture<Double> height = CompletableFuture.supplyAsync(() -> heightInCm, state.executor);
+        return weight.thenCombine(height, (kg, cm) -> {
+            Double heightInMeter = cm / 100;
+            return kg / (heightInMeter * heightInMeter);
+        }).join();
+    }
+
+    @Benchmark
+    public double primitive(ExecutorState state) {
+        DoubleFuture weight = DoubleFuture.supplyAsync(() -> weightInKg, state.executor);
+        DoubleFuture height = DoubleFuture.supplyAsync(() -> heightInCm, state.executor);
+        return weight.thenCombine(height, (kg, cm) -> {
+            double heightInMeter = cm / 100;
+            return kg / (heightInMeter * heightInMeter);
+        }).join();
+    }
+
+    @Benchmark
+    public double primitiveFromBoxed(ExecutorState state) {
+        DoubleFuture weight = DoubleFuture.from(CompletableFuture.supplyAsync(() -> weightInKg, state.executor));
+        DoubleFuture height = DoubleFuture.from(CompletableFuture.supplyAsync(() -> heightInCm, state.executor));
+        return weight.thenCombine(height, (kg, cm) -> {
+            double heightInMeter = cm / 100;
+            return kg / (heightInMeter * heightInMeter);
+        }).join();
+    }
+}
@@ -0,0 +1,63 @@
+package com.knowledgeshare.completablefuture.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nested futures vs thenCompose (Examples.thenComposeCallback) and thenCombine fan-in (Examples.thenCombineCallBack),
+ * with the simulated latency left out so only the composition overhead is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositionBenchmark {
+
+    private String userName = "Almarie";
+    private long userId = 58611L;
+
+    @Benchmark
+    public Double nested(ExecutorState state) {
+        CompletableFuture<CompletableFuture<Double>> result = getUserId(userName, state.executor)
+                .thenApply(id -> getUserCreditRating(id, state.executor));
+        return result.join().join();
+    }
+
+    @Benchmark
+    public Double thenCompose(ExecutorState state) {
+        return getUserId(userName, state.executor)
+                .thenCompose(id -> getUserCreditRating(id, state.executor))
+                .join();
+    }
+
+    @Benchmark
+    public Double thenCombine(ExecutorState state) {
+        return CompletableFuture.supplyAsync(() -> 65.0 + userId % 2, state.executor)
+                .thenCombine(CompletableFuture.supplyAsync(() -> 177.8 + userId % 2, state.executor), (weight, height) -> {
+                    Double heightInMeter = height / 100;
+                    return weight / (heightInMeter * heightInMeter);
+                })
+                .join();
+    }
+
+    private static CompletableFuture<Long> getUserId(String userName, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> 147L + userName.length(), executor);
+    }
+
+    private static CompletableFuture<Double> getUserCreditRating(Long userId, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> 10.5 + userId % 2, executor);
+    }
+}
@@ -0,0 +1,47 @@
+package com.knowledgeshare.completablefuture.benchmark;
+
+import com.knowledgeshare.completablefuture.executor.ExecutorConfiguration;
+import com.knowledgeshare.completablefuture.executor.ExecutorProperties;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Runs every benchmark once on {@code ForkJoinPool.commonPool()} and once on a dedicated pool built the same way as
+ * the application's executors.
+ */
+@State(Scope.Benchmark)
+public class ExecutorState {
+
+    @Param({"commonPool", "dedicated"})
+    public String executorType;
+
+    public Executor executor;
+
+    private ThreadPoolExecutor dedicated;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("dedicated".equals(executorType)) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            dedicated = ExecutorConfiguration.newThreadPool("benchmark", new ExecutorProperties.Pool(cores, cores, 100_000));
+            executor = dedicated;
+        } else {
+            executor = ForkJoinPool.commonPool();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (dedicated != null) {
+            dedicated.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.knowledgeshare.completablefuture.benchmark;
+
+import com.knowledgeshare.completablefuture.pipeline.Pipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The chain of Examples.thenApplyChainedCallbacks as plain thenApply stages vs a {@link Pipeline} that fuses them,
+ * with and without the remote call in the middle. Run with {@code -prof gc} to compare the allocation per chain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FusionBenchmark {
+
+    private String name = "Almarie";
+
+    private final Pipeline<String, String> fused = Pipeline.<String>start()
+            .map(value -> "Hello " + value)
+            .map(value -> value + "! How are you?")
+            .map(String::trim);
+
+    private final Pipeline<String, String> fusedWithCompose = Pipeline.<String>start()
+            .thenCompose(CompletableFuture::completedFuture)
+            .map(value -> "Hello " + value)
+            .map(value -> value + "! How are you?")
+            .map(String::trim);
+
+    @Benchmark
+    public String chained(ExecutorState state) {
+        return CompletableFuture.supplyAsync(() -> name, state.executor)
+                .thenApply(value -> "Hello " + value)
+                .thenApply(value -> value + "! How are you?")
+                .thenApply(String::trim)
+                .join();
+    }
+
+    @Benchmark
+    public String fused(ExecutorState state) {
+        return fused.runAsync(name, state.executor).join();
+    }
+
+    @Benchmark
+    public String chainedWithCompose(ExecutorState state) {
+        return CompletableFuture.supplyAsync(() -> name, state.executor)
+                .thenCompose(CompletableFuture::completedFuture)
+                .thenApply(value -> "Hello " + value)
+                .thenApply(value -> value + "! How are you?")
+                .thenApply(String::trim)
+                .join();
+    }
+
+    @Benchmark
+    public String fusedWithCompose(ExecutorState state) {
+        return fusedWithCompose.runAsync(name, state.executor).join();
+    }
+}
@@ -0,0 +1,96 @@
+package com.knowledgeshare.completablefuture.benchmark;
+
+import com.knowledgeshare.completablefuture.logging.StageLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Four callbacks logging a formatted line with their thread id at the same time, the way Examples did with
+ * {@code System.out.println(String.format(...))} vs {@link StageLog}. Both write to a stream that discards the bytes,
+ * so the console itself is left out and only the formatting and the lock show.
+ * <p>
+ * {@code stageLog} is what a callback pays: it only hands the event over, so its SampleTime percentiles next to those
+ * of {@code println} show the latency and the lock contention taken off the callers. Once the writer falls behind most
+ * of its events are sampled out or dropped though, so its throughput does not compare like with like.
+ * {@code stageLogWritten} does: each thread logs a burst small enough to fit the buffer and waits for the writer to
+ * write it, so every event is formatted and written, and its score is written events, directly comparable to
+ * {@code println}. The counts are printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class LoggingBenchmark {
+
+    private final String userName = "Almarie";
+    private final Double creditRating = 0.5;
+
+    private static final int BURST = 64; // Four threads' bursts stay below the sampling threshold of writtenLog
+
+    private PrintStream discard;
+    private StageLog stageLog;
+    private StageLog writtenLog;
+
+    @Setup
+    public void setUp() {
+        discard = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        stageLog = new StageLog(8192, 10, discard);
+        writtenLog = new StageLog(8192, 10, discard);
+    }
+
+    @TearDown
+    public void tearDown() {
+        stageLog.close();
+        writtenLog.close();
+        System.out.printf("%nStage log: %s written, %s sampled out, %s dropped%n",
+                stageLog.getWritten(), stageLog.getSampledOut(), stageLog.getDropped());
+        System.out.printf("Written stage log: %s written, %s sampled out, %s dropped%n",
+                writtenLog.getWritten(), writtenLog.getSampledOut(), writtenLog.getDropped());
+    }
+
+    @Benchmark
+    public void println() {
+        discard.println(String.format("Final credit rating for %s is %s, thread id: %s", userName, creditRating,
+                Thread.currentThread().getId()));
+    }
+
+    @Benchmark
+    public void stageLog() {
+        stageLog.log("Final credit rating for %s is %s, thread id: %s", userName, creditRating);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void stageLogWritten() {
+        for (int i = 0; i < BURST; i++) {
+            writtenLog.log("Final credit rating for %s is %s, thread id: %s", userName, creditRating);
+        }
+        writtenLog.flush();
+    }
+}
@@ -0,0 +1,50 @@
+package com.knowledgeshare.completablefuture.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * exceptionally vs handle (Examples.exceptionally and Examples.handle) on the success and the failure path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecoveryBenchmark {
+
+    @Param({"5596", "0"})
+    public long userId;
+
+    @Benchmark
+    public String exceptionally(ExecutorState state) {
+        return getUserAddress(state).exceptionally(ex -> "Not available").join();
+    }
+
+    @Benchmark
+    public String handle(ExecutorState state) {
+        return getUserAddress(state).handle((result, ex) -> ex != null ? "Not available" : result).join();
+    }
+
+    private CompletableFuture<String> getUserAddress(ExecutorState state) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (userId < 1) {
+                throw new IllegalArgumentException("User id cannot be less than 1");
+            }
+
+            return "FNB Building, 1 Enterprise Rd, Fairland, Johannesburg, 2170";
+        }, state.executor);
+    }
+}
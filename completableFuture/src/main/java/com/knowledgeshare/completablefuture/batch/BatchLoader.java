@@ -0,0 +1,230 @@
+package com.knowledgeshare.completablefuture.batch;
+
+import com.knowledgeshare.completablefuture.timer.DelayScheduler;
+import com.knowledgeshare.completablefuture.timer.Timeout;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Collapses many single-key lookups into a few bulk calls, in the style of DataLoader.
+ * <p>
+ * Keys passed to {@link #load(Object)} are collected until either {@code window} has passed since the first key of
+ * the batch arrived or {@code maxBatchSize} distinct keys are waiting, whichever comes first. The batch is then handed
+ * to the bulk loader in one call and each caller's future is completed with the value for its own key. Callers asking
+ * for the same key in the same batch share one lookup, but each gets its own dependent future, so a caller that
+ * cancels or completes its future does not change what the others get.
+ * <p>
+ * The bulk loader is called on the timer thread or on the thread that filled the batch, so it must return
+ * immediately with a future rather than doing the lookup inline.
+ */
+public class BatchLoader<K, V> {
+
+    private final Function<List<K>, CompletableFuture<Map<K, V>>> bulkLoader;
+    private final DelayScheduler scheduler;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final Object lock = new Object();
+    private Batch<K, V> current; // guarded by lock
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder keys = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxBatch = new AtomicLong();
+
+    public BatchLoader(Function<List<K>, CompletableFuture<Map<K, V>>> bulkLoader, DelayScheduler scheduler,
+                       Duration window, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be at least 1");
+        }
+
+        this.bulkLoader = bulkLoader;
+        this.scheduler = scheduler;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Queues {@code key} for the next bulk call. Values missing from the bulk result complete with {@code null}.
+     */
+    public CompletableFuture<V> load(K key) {
+        requests.increment();
+        Batch<K, V> full = null;
+        CompletableFuture<V> shared;
+
+        synchronized (lock) {
+            if (current == null) {
+                Batch<K, V> batch = new Batch<>();
+                // Closing the timer dispatches the batch right away rather than leaving its callers waiting
+                batch.timeout = scheduler.schedule(() -> dispatch(batch), () -> dispatch(batch), windowNanos, TimeUnit.NANOSECONDS);
+                current = batch;
+            }
+
+            shared = current.futures.computeIfAbsent(key, k -> new CompletableFuture<>());
+            if (current.futures.size() >= maxBatchSize) {
+                full = current;
+                current = null;
+            }
+        }
+
+        if (full != null) {
+            full.timeout.cancel();
+            dispatch(full);
+        }
+        return shared.thenApply(Function.identity());
+    }
+
+    /**
+     * Dispatches the keys collected so far without waiting for the window to close.
+     */
+    public void flush() {
+        Batch<K, V> batch;
+        synchronized (lock) {
+            batch = current;
+            current = null;
+        }
+
+        if (batch != null) {
+            batch.timeout.cancel();
+            dispatch(batch);
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(batches.sum(), keys.sum(), requests.sum(), maxBatch.get(), totalWaitNanos.sum());
+    }
+
+    private void dispatch(Batch<K, V> batch) {
+        synchronized (lock) {
+            if (batch.dispatched) {
+                return;
+            }
+            batch.dispatched = true;
+            if (current == batch) {
+                current = null;
+            }
+        }
+
+        int size = batch.futures.size();
+        batches.increment();
+        keys.add(size);
+        totalWaitNanos.add(System.nanoTime() - batch.createdNanos);
+        maxBatch.accumulateAndGet(size, Math::max);
+
+        CompletableFuture<Map<K, V>> result;
+        try {
+            result = bulkLoader.apply(new ArrayList<>(batch.futures.keySet()));
+            if (result == null) {
+                throw new NullPointerException("Bulk loader returned null instead of a future");
+            }
+        } catch (RuntimeException e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        }
+
+        result.whenComplete((values, ex) -> complete(batch, values, ex));
+    }
+
+    // An exception thrown in here would be swallowed by whenComplete and leave the callers waiting forever, so whatever
+    // goes wrong fails the futures that are not completed yet instead
+    private static <K, V> void complete(Batch<K, V> batch, Map<K, V> values, Throwable ex) {
+        Throwable failure = ex;
+        if (failure == null && values == null) {
+            failure = new NullPointerException("Bulk loader returned null instead of a map");
+        }
+
+        for (Map.Entry<K, CompletableFuture<V>> entry : batch.futures.entrySet()) {
+            CompletableFuture<V> future = entry.getValue();
+            if (failure != null) {
+                future.completeExceptionally(failure);
+                continue;
+            }
+            try {
+                future.complete(values.get(entry.getKey()));
+            } catch (RuntimeException e) {
+                failure = e; // E.g. a map that rejects the key type, it would fail for the remaining keys as well
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class Batch<K, V> {
+
+        private final Map<K, CompletableFuture<V>> futures = new LinkedHashMap<>();
+        private final long createdNanos = System.nanoTime();
+        private Timeout timeout;
+        private boolean dispatched;
+    }
+
+    /**
+     * Point-in-time counters for a {@link BatchLoader}.
+     */
+    public static final class Stats {
+
+        private final long batches;
+        private final long keys;
+        private final long requests;
+        private final long maxBatchSize;
+        private final long totalWaitNanos;
+
+        private Stats(long batches, long keys, long requests, long maxBatchSize, long totalWaitNanos) {
+            this.batches = batches;
+            this.keys = keys;
+            this.requests = requests;
+            this.maxBatchSize = maxBatchSize;
+            this.totalWaitNanos = totalWaitNanos;
+        }
+
+        /**
+         * Number of bulk calls made.
+         */
+        public long getBatches() {
+            return batches;
+        }
+
+        /**
+         * Number of distinct keys sent to the bulk loader.
+         */
+        public long getKeys() {
+            return keys;
+        }
+
+        /**
+         * Number of {@link BatchLoader#load(Object)} calls, including ones that shared a key with an earlier call.
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public double getAverageBatchSize() {
+            return batches == 0 ? 0 : (double) keys / batches;
+        }
+
+        /**
+         * Average time a batch was held open before being dispatched, i.e. the extra latency batching added.
+         */
+        public Duration getAverageWait() {
+            return batches == 0 ? Duration.ZERO : Duration.ofNanos(totalWaitNanos / batches);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats[batches=%d, keys=%d, requests=%d, averageBatchSize=%.1f, maxBatchSize=%d, averageWait=%s]",
+                    batches, keys, requests, getAverageBatchSize(), maxBatchSize, getAverageWait());
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.knowledgeshare.completablefuture.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Runs a single-id lookup for every id of a large collection, in a bounded number of tasks.
+ * <p>
+ * Looping over the ids and calling the lookup for each starts every call at once and leaves a future per id behind.
+ * Instead the ids are split into a few chunks per executor thread, each submitted as one task, so a thread that is
+ * done early picks up the next chunk while the others are still busy. A chunk keeps at most
+ * {@code maxConcurrencyPerChunk} of its lookups in flight and starts the next as soon as one completes, on the thread
+ * that completed it.
+ * <p>
+ * Results come back in the order of the ids. A failed lookup does not fail the others: like {@code handle}, the
+ * fallback turns its exception into the value for that id. Cancelling the returned future stops chunks from starting
+ * new lookups, the ones in flight still finish.
+ */
+public class BulkLookup<K, V> {
+
+    // A few chunks per thread, so chunks that finish early are made up for by the ones still queued
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final Function<? super K, ? extends CompletableFuture<? extends V>> lookup;
+    private final BiFunction<? super K, ? super Throwable, ? extends V> fallback;
+    private final Executor executor;
+    private final int parallelism;
+    private final int maxConcurrencyPerChunk;
+
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param parallelism the number of threads of {@code executor}, which the chunk count is sized to
+     */
+    public BulkLookup(Function<? super K, ? extends CompletableFuture<? extends V>> lookup,
+                      BiFunction<? super K, ? super Throwable, ? extends V> fallback,
+                      Executor executor, int parallelism, int maxConcurrencyPerChunk) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        if (maxConcurrencyPerChunk < 1) {
+            throw new IllegalArgumentException("Max concurrency per chunk must be at least 1");
+        }
+
+        this.lookup = lookup;
+        this.fallback = fallback;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.maxConcurrencyPerChunk = maxConcurrencyPerChunk;
+    }
+
+    /**
+     * Looks up every id and completes with the results in the same order. Only fails if the fallback throws.
+     */
+    public CompletableFuture<List<V>> lookupAll(List<? extends K> ids) {
+        List<? extends K> keys = ids instanceof RandomAccess ? ids : new ArrayList<>(ids);
+        if (keys.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        Run run = new Run(keys);
+        int chunkCount = Math.min(keys.size(), parallelism * CHUNKS_PER_THREAD);
+        int chunkSize = (keys.size() + chunkCount - 1) / chunkCount;
+        for (int from = 0; from < keys.size(); from += chunkSize) {
+            Chunk chunk = new Chunk(run, from, Math.min(from + chunkSize, keys.size()));
+            chunks.increment();
+            try {
+                executor.execute(chunk::drain);
+            } catch (RejectedExecutionException ex) {
+                chunk.reject(ex); // Only this chunk's ids get the fallback, the others still run
+            }
+        }
+        return run.result;
+    }
+
+    public long getChunks() {
+        return chunks.sum();
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * One call of {@link #lookupAll}. Every slot of {@code values} is written once, before the countdown that
+     * publishes it to the thread completing the result.
+     */
+    private final class Run {
+
+        private final List<? extends K> keys;
+        private final Object[] values;
+        private final AtomicInteger remaining;
+        private final CompletableFuture<List<V>> result = new CompletableFuture<>();
+
+        private Run(List<? extends K> keys) {
+            this.keys = keys;
+            this.values = new Object[keys.size()];
+            this.remaining = new AtomicInteger(keys.size());
+        }
+
+        private void complete(int index, V value, Throwable ex) {
+            if (ex != null) {
+                failures.increment();
+                try {
+                    value = fallback.apply(keys.get(index), ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                } catch (Throwable fallbackEx) {
+                    result.completeExceptionally(fallbackEx);
+                }
+            }
+            values[index] = value;
+
+            if (remaining.decrementAndGet() == 0) {
+                finish();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void finish() {
+            result.complete((List<V>) Arrays.asList(values));
+        }
+    }
+
+    /**
+     * Lookups for the ids {@code [from, to)}. {@link #drain()} starts them and is run by one thread at a time: the
+     * task on the executor first, then the threads completing lookups. A thread that finds it busy leaves a note in
+     * {@code wip}, so lookups that complete inline make the running drain loop go round again rather than recurse.
+     */
+    private final class Chunk {
+
+        private final Run run;
+        private final int to;
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicInteger permits = new AtomicInteger(maxConcurrencyPerChunk);
+        private int next; // Only touched by the thread running drain()
+
+        private Chunk(Run run, int from, int to) {
+            this.run = run;
+            this.next = from;
+            this.to = to;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            do {
+                while (next < to && permits.get() > 0 && !run.result.isDone()) {
+                    permits.decrementAndGet();
+                    start(next++);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void start(int index) {
+            lookups.increment();
+            CompletableFuture<? extends V> future;
+            try {
+                future = lookup.apply(run.keys.get(index));
+            } catch (Throwable ex) {
+                finished(index, null, ex);
+                return;
+            }
+            future.whenComplete((value, ex) -> finished(index, value, ex));
+        }
+
+        private void finished(int index, V value, Throwable ex) {
+            run.complete(index, value, ex);
+            permits.incrementAndGet();
+            drain();
+        }
+
+        private void reject(RejectedExecutionException ex) {
+            for (int index = next; index < to; index++) {
+                run.complete(index, null, ex);
+            }
+        }
+    }
+}
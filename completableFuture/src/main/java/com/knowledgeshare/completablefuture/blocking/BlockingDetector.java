@@ -0,0 +1,167 @@
+package com.knowledgeshare.completablefuture.blocking;
+
+import com.knowledgeshare.completablefuture.executor.NamedThreadFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Reports executor threads that block while running a task, e.g. in {@code get()}, {@code join()}, {@code sleep} or on
+ * a lock.
+ * <p>
+ * A blocked pool thread does nothing useful but still counts against the pool size, so a few of them quietly stall a
+ * small pool, and tasks that wait on other tasks in the same pool can deadlock it. The detector keeps track of which
+ * threads are running a task (see {@link #monitor} and {@link #beforeExecute}) and a watchdog thread samples their
+ * state. A thread that stays waiting or blocked for longer than the threshold is reported once per task with the
+ * executor, the stage it was in and its stack trace.
+ * <p>
+ * Blocking that cannot be avoided should go through {@link ManagedBlocking}, which is expected and not reported.
+ * Sampling misses blocks shorter than the sample interval, which is a quarter of the threshold.
+ */
+public class BlockingDetector implements AutoCloseable {
+
+    private static final ThreadLocal<RunningTask> CURRENT = new ThreadLocal<>();
+
+    private final long thresholdNanos;
+    private final Consumer<BlockingReport> reporter;
+    private final Map<Thread, RunningTask> running = new ConcurrentHashMap<>();
+    private final Thread watchdog;
+    private final LongAdder reported = new LongAdder();
+    private volatile boolean closed;
+
+    public BlockingDetector(Duration threshold, Consumer<BlockingReport> reporter) {
+        this.thresholdNanos = threshold.toNanos();
+        this.reporter = reporter;
+        this.watchdog = new NamedThreadFactory("blocking-detector").newThread(this::watch);
+        this.watchdog.start();
+    }
+
+    /**
+     * Wraps {@code executor} so the tasks it runs are watched. For a {@code ThreadPoolExecutor} the same is done with
+     * less overhead by calling {@link #beforeExecute} and {@link #afterExecute} from its hooks.
+     */
+    public Executor monitor(String executorName, Executor executor) {
+        return task -> executor.execute(() -> {
+            beforeExecute(executorName, Thread.currentThread());
+            try {
+                task.run();
+            } finally {
+                afterExecute();
+            }
+        });
+    }
+
+    public void beforeExecute(String executorName, Thread thread) {
+        RunningTask task = new RunningTask(executorName);
+        running.put(thread, task);
+        CURRENT.set(task);
+    }
+
+    public void afterExecute() {
+        running.remove(Thread.currentThread());
+        CURRENT.remove();
+    }
+
+    /**
+     * Runs {@code body} under the name {@code stage}, so blocking inside it is reported with that name.
+     */
+    public static <T> T inStage(String stage, Supplier<T> body) {
+        RunningTask task = CURRENT.get();
+        if (task == null) {
+            return body.get();
+        }
+
+        String previous = task.stage;
+        task.stage = stage;
+        try {
+            return body.get();
+        } finally {
+            task.stage = previous;
+        }
+    }
+
+    /**
+     * Number of blocked tasks reported so far.
+     */
+    public long getReported() {
+        return reported.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        watchdog.interrupt();
+    }
+
+    // Called by ManagedBlocking around a sanctioned block on the current thread
+    static void enterManaged() {
+        RunningTask task = CURRENT.get();
+        if (task != null) {
+            task.managed++;
+        }
+    }
+
+    static void exitManaged() {
+        RunningTask task = CURRENT.get();
+        if (task != null) {
+            task.managed--;
+        }
+    }
+
+    private void watch() {
+        long intervalNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), thresholdNanos / 4);
+        while (!closed) {
+            long now = System.nanoTime();
+            running.forEach((thread, task) -> sample(thread, task, now));
+
+            try {
+                TimeUnit.NANOSECONDS.sleep(intervalNanos);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void sample(Thread thread, RunningTask task, long now) {
+        Thread.State state = thread.getState();
+        boolean blocked = state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING || state == Thread.State.BLOCKED;
+        if (!blocked || task.managed > 0) {
+            task.blockedSince = 0;
+            return;
+        }
+
+        if (task.blockedSince == 0) {
+            task.blockedSince = now;
+        } else if (!task.reported && now - task.blockedSince >= thresholdNanos) {
+            StackTraceElement[] stackTrace = thread.getStackTrace();
+            if (running.get(thread) != task) {
+                return; // The task finished while the stack was taken, the trace belongs to something else
+            }
+            task.reported = true;
+            reported.increment();
+            reporter.accept(new BlockingReport(task.executor, task.stage, thread.getName(), state,
+                    Duration.ofNanos(now - task.blockedSince), stackTrace));
+        }
+    }
+
+    private static final class RunningTask {
+
+        private final String executor;
+        private volatile String stage;
+        private volatile int managed; // written only by the thread running the task
+
+        // Only touched by the watchdog
+        private long blockedSince;
+        private boolean reported;
+
+        private RunningTask(String executor) {
+            this.executor = executor;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.knowledgeshare.completablefuture.blocking;
+
+import java.time.Duration;
+
+/**
+ * An executor thread found blocked while running a task, as reported by {@link BlockingDetector}.
+ */
+public final class BlockingReport {
+
+    private final String executor;
+    private final String stage;
+    private final String threadName;
+    private final Thread.State state;
+    private final Duration blockedFor;
+    private final StackTraceElement[] stackTrace;
+
+    BlockingReport(String executor, String stage, String threadName, Thread.State state, Duration blockedFor,
+                   StackTraceElement[] stackTrace) {
+        this.executor = executor;
+        this.stage = stage;
+        this.threadName = threadName;
+        this.state = state;
+        this.blockedFor = blockedFor;
+        this.stackTrace = stackTrace;
+    }
+
+    public String getExecutor() {
+        return executor;
+    }
+
+    /**
+     * The stage the task was running, or {@code null} if it did not run inside {@link BlockingDetector#inStage}.
+     */
+    public String getStage() {
+        return stage;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public Thread.State getState() {
+        return state;
+    }
+
+    /**
+     * How long the thread had been blocked when it was reported. It may stay blocked for longer.
+     */
+    public Duration getBlockedFor() {
+        return blockedFor;
+    }
+
+    public StackTraceElement[] getStackTrace() {
+        return stackTrace.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format("Thread %s of executor %s blocked (%s) for %s in stage %s",
+                threadName, executor, state, blockedFor, stage == null ? "<unnamed>" : stage));
+        for (StackTraceElement element : stackTrace) {
+            builder.append(System.lineSeparator()).append("\tat ").append(element);
+        }
+        return builder.toString();
+    }
+}
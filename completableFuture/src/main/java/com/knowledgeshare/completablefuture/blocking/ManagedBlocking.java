@@ -0,0 +1,125 @@
+package com.knowledgeshare.completablefuture.blocking;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking calls for the places where blocking cannot be avoided.
+ * <p>
+ * Each call runs as a {@link ForkJoinPool.ManagedBlocker}: on a {@link ForkJoinPool} worker the pool starts a spare
+ * thread for the duration of the block, so its parallelism is kept up and tasks the blocked one waits for can still
+ * run. A thread pool that implements {@link Compensation} and registers its threads with {@link #enterPool} does the
+ * same, like the io and cpu pools. On any other thread, virtual threads included, the call simply blocks.
+ * {@link BlockingDetector} treats these calls as expected and does not report them.
+ * <p>
+ * {@code CompletableFuture.get()} and {@code join()} already compensate on a {@code ForkJoinPool}, but
+ * {@code Future.get()} of other futures, {@code Thread.sleep} and latches do not.
+ */
+public final class ManagedBlocking {
+
+    private static final ThreadLocal<Compensation> POOL = new ThreadLocal<>();
+
+    private ManagedBlocking() {
+    }
+
+    /**
+     * Makes {@code pool} compensate for the managed blocks of the current thread until {@link #leavePool()}. Called
+     * by the pool before each task it runs.
+     */
+    public static void enterPool(Compensation pool) {
+        POOL.set(pool);
+    }
+
+    public static void leavePool() {
+        POOL.remove();
+    }
+
+    public static <T> T get(Future<T> future) throws ExecutionException, InterruptedException {
+        block(new ForkJoinPool.ManagedBlocker() {
+            @Override
+            public boolean block() throws InterruptedException {
+                try {
+                    future.get();
+                } catch (ExecutionException | RuntimeException e) {
+                    // Rethrown by the get() below
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return future.isDone();
+            }
+        });
+        return future.get();
+    }
+
+    public static void await(CountDownLatch latch) throws InterruptedException {
+        block(new ForkJoinPool.ManagedBlocker() {
+            @Override
+            public boolean block() throws InterruptedException {
+                latch.await();
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return latch.getCount() == 0;
+            }
+        });
+    }
+
+    public static void sleep(Duration duration) throws InterruptedException {
+        long end = System.nanoTime() + duration.toNanos();
+        block(new ForkJoinPool.ManagedBlocker() {
+            @Override
+            public boolean block() throws InterruptedException {
+                TimeUnit.NANOSECONDS.sleep(end - System.nanoTime());
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return end - System.nanoTime() <= 0;
+            }
+        });
+    }
+
+    private static void block(ForkJoinPool.ManagedBlocker blocker) throws InterruptedException {
+        if (blocker.isReleasable()) {
+            return;
+        }
+
+        Compensation pool = POOL.get();
+        boolean compensated = pool != null && pool.beginBlocking();
+        BlockingDetector.enterManaged();
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        } finally {
+            BlockingDetector.exitManaged();
+            if (compensated) {
+                pool.endBlocking();
+            }
+        }
+    }
+
+    /**
+     * A pool that can add a thread for one of its threads while it waits in a managed block.
+     */
+    public interface Compensation {
+
+        /**
+         * Called on the pool thread before it blocks. Returns {@code false} if the pool cannot add a thread.
+         */
+        boolean beginBlocking();
+
+        /**
+         * Called on the pool thread once it stopped blocking, only if {@link #beginBlocking()} returned {@code true}.
+         */
+        void endBlocking();
+    }
+}
@@ -0,0 +1,249 @@
+package com.knowledgeshare.completablefuture.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of {@link CompletableFuture}s rather than of values.
+ * <p>
+ * Because the future is cached the moment a load starts, concurrent callers for the same key share the load that is
+ * already in flight instead of starting their own (single-flight). Loads that complete exceptionally are removed
+ * straight away, so a failure is never served from the cache. Successful values expire {@code timeToLive} after they
+ * completed, and once more than {@code maximumSize} keys are cached the least recently used one is evicted.
+ * <p>
+ * Every caller gets its own dependent future (the Java 8 equivalent of {@code copy()}), so a caller that cancels or
+ * times out its future does not affect anyone else waiting on the same load. Once every caller waiting on a load has
+ * given up on it, whether by cancelling or by completing its future some other way, e.g. with a timeout, nobody needs
+ * the value any more: the future the loader returned is cancelled and the entry removed.
+ */
+public class AsyncCache<K, V> {
+
+    private final long timeToLiveNanos;
+    private final Map<K, Entry<V>> entries; // guarded by itself, in access order
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public AsyncCache(int maximumSize, Duration timeToLive) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be at least 1");
+        }
+
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached or in-flight future for {@code key}, or starts a new load with {@code loader}. The loader is
+     * called outside the cache lock and should return without blocking.
+     */
+    public CompletableFuture<V> get(K key, Function<? super K, ? extends CompletableFuture<V>> loader) {
+        Entry<V> entry;
+        synchronized (entries) {
+            Entry<V> existing = entries.get(key);
+            if (existing != null && !existing.isExpired(System.nanoTime())) {
+                if (existing.future.isDone()) {
+                    hits.increment();
+                    return copy(existing.future);
+                }
+                coalesced.increment();
+                existing.waiters++;
+                return waitingCopy(key, existing);
+            }
+
+            misses.increment();
+            entry = new Entry<>(new CompletableFuture<>());
+            entry.waiters++;
+            entries.put(key, entry);
+        }
+
+        entry.future.whenComplete((value, ex) -> {
+            if (ex != null) {
+                remove(key, entry);
+            } else {
+                entry.expiresAtNanos = System.nanoTime() + timeToLiveNanos;
+            }
+        });
+
+        CompletableFuture<V> loaded;
+        try {
+            loaded = loader.apply(key);
+        } catch (RuntimeException e) {
+            loaded = new CompletableFuture<>();
+            loaded.completeExceptionally(e);
+        }
+        loaded.whenComplete((value, ex) -> {
+            if (ex != null) {
+                entry.future.completeExceptionally(ex);
+            } else {
+                entry.future.complete(value);
+            }
+        });
+        entry.load = loaded;
+        if (entry.future.isCancelled()) {
+            loaded.cancel(true); // Every caller that joined while the loader ran has cancelled already
+        }
+        return waitingCopy(key, entry);
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), coalesced.sum(), evictions.sum());
+    }
+
+    private static <V> CompletableFuture<V> copy(CompletableFuture<V> future) {
+        return future.thenApply(Function.identity());
+    }
+
+    // A copy of a load in flight, which stops waiting on the load when it completes before the load did: cancelled,
+    // timed out by Timeouts.orTimeout, which completes it exceptionally instead, or completed by the caller
+    private CompletableFuture<V> waitingCopy(K key, Entry<V> entry) {
+        CompletableFuture<V> copy = copy(entry.future);
+        copy.whenComplete((value, ex) -> {
+            if (!entry.future.isDone()) {
+                stopWaiting(key, entry);
+            }
+        });
+        return copy;
+    }
+
+    private void stopWaiting(K key, Entry<V> entry) {
+        synchronized (entries) {
+            if (--entry.waiters > 0 || entry.future.isDone()) {
+                return;
+            }
+            // Removed under the lock, so no new caller can join the load that is about to be cancelled
+            if (entries.get(key) == entry) {
+                entries.remove(key);
+            }
+        }
+
+        entry.future.cancel(false);
+        CompletableFuture<V> load = entry.load;
+        if (load != null) {
+            load.cancel(true);
+        }
+    }
+
+    private void remove(K key, Entry<V> entry) {
+        synchronized (entries) {
+            // Only remove our own entry, a newer load may have replaced it already
+            if (entries.get(key) == entry) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private final CompletableFuture<V> future;
+        private volatile long expiresAtNanos = Long.MAX_VALUE; // set once the load completed
+        private volatile CompletableFuture<V> load; // what the loader returned, null until it returned
+        private int waiters; // callers of the load in flight that have not given up, guarded by entries
+
+        private Entry(CompletableFuture<V> future) {
+            this.future = future;
+        }
+
+        private boolean isExpired(long nowNanos) {
+            long expiresAt = expiresAtNanos;
+            return expiresAt != Long.MAX_VALUE && nowNanos - expiresAt >= 0;
+        }
+    }
+
+    /**
+     * Point-in-time counters for an {@link AsyncCache}.
+     */
+    public static final class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long coalesced;
+        private final long evictions;
+
+        private Stats(long hits, long misses, long coalesced, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.coalesced = coalesced;
+            this.evictions = evictions;
+        }
+
+        /**
+         * Lookups served by an already completed value.
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * Lookups that started a new load.
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Lookups that joined a load already in flight for the same key.
+         */
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getRequests() {
+            return hits + misses + coalesced;
+        }
+
+        public double getHitRate() {
+            return rate(hits);
+        }
+
+        public double getMissRate() {
+            return rate(misses);
+        }
+
+        public double getCoalesceRate() {
+            return rate(coalesced);
+        }
+
+        private double rate(long count) {
+            long requests = getRequests();
+            return requests == 0 ? 0 : (double) count / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats[requests=%d, hitRate=%.2f, missRate=%.2f, coalesceRate=%.2f, evictions=%d]",
+                    getRequests(), getHitRate(), getMissRate(), getCoalesceRate(), evictions);
+        }
+    }
+}
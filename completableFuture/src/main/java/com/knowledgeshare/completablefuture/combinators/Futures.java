@@ -0,0 +1,186 @@
+package com.knowledgeshare.completablefuture.combinators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Combinators that {@link CompletableFuture} itself is missing.
+ */
+public final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Like {@link CompletableFuture#anyOf(CompletableFuture[])}, but typed and the futures that lose are cancelled as
+     * soon as one completes, normally or exceptionally. Cancelling the returned future cancels all of them.
+     * <p>
+     * Cancelling a plain {@code supplyAsync} future does not stop its task, so to actually free the losers' threads the
+     * futures should come from {@link #supplyInterruptibly(Supplier, Executor)} or another source that reacts to
+     * cancellation, such as a {@code DelayScheduler}.
+     * <p>
+     * With no futures at all there is nothing that could ever complete the result, so unlike {@code anyOf} it fails
+     * right away with an {@link IllegalArgumentException} instead of never completing.
+     */
+    public static <T> CompletableFuture<T> firstOf(List<? extends CompletableFuture<? extends T>> futures) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (futures.isEmpty()) {
+            result.completeExceptionally(new IllegalArgumentException("No futures to wait for"));
+            return result;
+        }
+        for (CompletableFuture<? extends T> future : futures) {
+            future.whenComplete((value, ex) -> {
+                if (ex != null) {
+                    result.completeExceptionally(ex);
+                } else {
+                    result.complete(value);
+                }
+            });
+        }
+
+        result.whenComplete((value, ex) -> futures.forEach(future -> future.cancel(true)));
+        return result;
+    }
+
+    /**
+     * Like {@link CompletableFuture#allOf(CompletableFuture[])}, but completes with the results in the order of
+     * {@code futures} instead of {@code Void}, so nobody has to call {@code get()} or {@code join()} on the inputs.
+     * If any future fails the result fails with the first failure once all of them are done, like {@code allOf}.
+     */
+    public static <T> CompletableFuture<List<T>> allOf(List<? extends CompletableFuture<? extends T>> futures) {
+        return collect(futures, false);
+    }
+
+    /**
+     * Like {@link #allOf(List)}, but fails as soon as any future fails and cancels the others, so the caller does not
+     * wait for the slowest call when the result is already known to be a failure.
+     */
+    public static <T> CompletableFuture<List<T>> allOfFailFast(List<? extends CompletableFuture<? extends T>> futures) {
+        CompletableFuture<List<T>> result = collect(futures, true);
+        result.whenComplete((values, ex) -> {
+            if (ex != null) {
+                futures.forEach(future -> future.cancel(true));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns futures that complete in the order the inputs finish: the first returned future completes with the
+     * outcome of whichever input finished first, and so on. Iterating over them and attaching callbacks lets each
+     * result be processed as it arrives, without blocking and without waiting for the slowest input.
+     */
+    public static <T> List<CompletableFuture<T>> inCompletionOrder(List<? extends CompletableFuture<? extends T>> futures) {
+        List<CompletableFuture<T>> ordered = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            ordered.add(new CompletableFuture<>());
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        for (CompletableFuture<? extends T> future : futures) {
+            future.whenComplete((value, ex) -> {
+                CompletableFuture<T> slot = ordered.get(next.getAndIncrement());
+                if (ex != null) {
+                    slot.completeExceptionally(ex);
+                } else {
+                    slot.complete(value);
+                }
+            });
+        }
+        return ordered;
+    }
+
+    /**
+     * Calls {@code callback} with each outcome as the futures finish, in finish order. The returned future completes
+     * once every callback has run.
+     */
+    public static <T> CompletableFuture<Void> onEachCompleted(List<? extends CompletableFuture<? extends T>> futures,
+                                                             BiConsumer<? super T, ? super Throwable> callback) {
+        CompletableFuture<?>[] callbacks = futures.stream()
+                .map(future -> future.whenComplete(callback).handle((value, ex) -> null))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(callbacks);
+    }
+
+    /**
+     * Like {@link CompletableFuture#supplyAsync(Supplier, Executor)}, but {@code cancel(true)} on the returned future
+     * interrupts the thread running {@code supplier}, or stops it from starting if it is still queued.
+     */
+    public static <T> CompletableFuture<T> supplyInterruptibly(Supplier<T> supplier, Executor executor) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                result.complete(supplier.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, null);
+
+        result.whenComplete((value, ex) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private static <T> CompletableFuture<List<T>> collect(List<? extends CompletableFuture<? extends T>> futures,
+                                                          boolean failFast) {
+        CompletableFuture<List<T>> result = new CompletableFuture<>();
+        if (futures.isEmpty()) {
+            result.complete(new ArrayList<>());
+            return result;
+        }
+
+        Object[] values = new Object[futures.size()];
+        AtomicInteger remaining = new AtomicInteger(futures.size());
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+        for (int i = 0; i < futures.size(); i++) {
+            int index = i;
+            futures.get(i).whenComplete((value, ex) -> {
+                if (ex != null) {
+                    firstFailure.compareAndSet(null, ex);
+                    if (failFast) {
+                        result.completeExceptionally(ex);
+                    }
+                } else {
+                    values[index] = value;
+                }
+
+                if (remaining.decrementAndGet() == 0) {
+                    Throwable failure = firstFailure.get();
+                    if (failure != null) {
+                        result.completeExceptionally(failure);
+                    } else {
+                        result.complete(toList(values));
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> toList(Object[] values) {
+        List<T> list = new ArrayList<>(values.length);
+        for (Object value : values) {
+            list.add((T) value);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,193 @@
+package com.knowledgeshare.completablefuture.combinators;
+
+import com.knowledgeshare.completablefuture.timer.DelayScheduler;
+import com.knowledgeshare.completablefuture.timer.Timeout;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests: if a call has not answered by the time most calls would have, fire one backup and take whichever
+ * answers first. The other one is cancelled.
+ * <p>
+ * The hedge delay is the given latency percentile of recent calls, so only the slowest calls (about 5% of them at
+ * the 95th percentile) send a second request. That removes most of the tail latency for a few percent of extra load.
+ */
+public class Hedger {
+
+    private static final int RECOMPUTE_EVERY = 64;
+
+    private final DelayScheduler scheduler;
+    private final double percentile;
+    private final long minDelayNanos;
+
+    private final AtomicLongArray samples;
+    private final AtomicLong recorded = new AtomicLong();
+    private volatile long hedgeDelayNanos;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    /**
+     * @param percentile   latency percentile after which the backup is sent, e.g. 0.95
+     * @param initialDelay hedge delay until enough latencies have been observed
+     * @param minDelay     lower bound for the hedge delay, so a run of fast calls cannot make every call hedge
+     * @param sampleSize   how many recent latencies the percentile is taken over
+     */
+    public Hedger(DelayScheduler scheduler, double percentile, Duration initialDelay, Duration minDelay, int sampleSize) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1");
+        }
+
+        this.scheduler = scheduler;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.samples = new AtomicLongArray(sampleSize);
+        this.hedgeDelayNanos = Math.max(minDelayNanos, initialDelay.toNanos());
+    }
+
+    /**
+     * Calls {@code call} once, and a second time if the first attempt is slower than the hedge delay. The supplier runs
+     * on the timer thread for the backup, so it must return its future without blocking.
+     */
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> call) {
+        calls.increment();
+        Attempts<T> attempts = new Attempts<>();
+        long start = System.nanoTime();
+
+        CompletableFuture<T> primary = call.get();
+        attempts.launched(primary);
+        primary.whenComplete((value, ex) -> {
+            if (ex == null || primary.isCancelled() && attempts.backupWon()) {
+                // A primary cancelled because the backup won was at least this slow, so it still counts. One the
+                // caller cancelled says nothing about latency
+                record(System.nanoTime() - start);
+            }
+            attempts.completed(value, ex, false);
+        });
+
+        Timeout hedge = scheduler.schedule(() -> {
+            if (attempts.result.isDone()) {
+                return;
+            }
+
+            hedges.increment();
+            CompletableFuture<T> backup = call.get();
+            if (attempts.launched(backup)) {
+                backup.whenComplete((value, ex) -> attempts.completed(value, ex, true));
+            } else {
+                backup.cancel(true);
+            }
+        }, hedgeDelayNanos, TimeUnit.NANOSECONDS);
+
+        attempts.result.whenComplete((value, ex) -> {
+            hedge.cancel();
+            attempts.cancelAll();
+        });
+        return attempts.result;
+    }
+
+    public Duration currentHedgeDelay() {
+        return Duration.ofNanos(hedgeDelayNanos);
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * Number of backup requests sent.
+     */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * Number of calls where the backup answered first.
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    private void record(long latencyNanos) {
+        long count = recorded.getAndIncrement();
+        samples.set((int) (count % samples.length()), latencyNanos);
+
+        if ((count + 1) % RECOMPUTE_EVERY == 0) {
+            int size = (int) Math.min(count + 1, samples.length());
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = samples.get(i);
+            }
+            Arrays.sort(sorted);
+            hedgeDelayNanos = Math.max(minDelayNanos, sorted[(int) Math.min(size - 1, Math.ceil(percentile * size) - 1)]);
+        }
+    }
+
+    // The first success wins. A failure only fails the call once no other attempt is still running.
+    private final class Attempts<T> {
+
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final List<CompletableFuture<T>> running = new ArrayList<>(2); // guarded by this
+        private int pending; // guarded by this
+        private boolean succeeded; // guarded by this
+        private boolean backupWon; // guarded by this
+
+        private synchronized boolean launched(CompletableFuture<T> attempt) {
+            if (result.isDone()) {
+                return false;
+            }
+
+            running.add(attempt);
+            pending++;
+            return true;
+        }
+
+        private void completed(T value, Throwable ex, boolean backup) {
+            if (ex == null) {
+                synchronized (this) {
+                    if (succeeded || result.isDone()) {
+                        return;
+                    }
+                    succeeded = true;
+                    backupWon = backup;
+                }
+                // Counted before completing, so the stats are up to date by the time the caller sees the result
+                if (backup) {
+                    hedgeWins.increment();
+                }
+                result.complete(value);
+                return;
+            }
+
+            boolean last;
+            synchronized (this) {
+                last = --pending == 0;
+            }
+            if (last) {
+                result.completeExceptionally(ex);
+            }
+        }
+
+        private synchronized boolean backupWon() {
+            return backupWon;
+        }
+
+        private void cancelAll() {
+            List<CompletableFuture<T>> attempts;
+            synchronized (this) {
+                attempts = new ArrayList<>(running);
+            }
+            attempts.forEach(attempt -> attempt.cancel(true));
+        }
+    }
+}
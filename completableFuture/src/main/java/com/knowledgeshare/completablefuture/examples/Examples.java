@@ -1,269 +1,451 @@
 package com.knowledgeshare.completablefuture.examples;
 
+import com.knowledgeshare.completablefuture.batch.BatchLoader;
+import com.knowledgeshare.completablefuture.batch.BulkLookup;
+import com.knowledgeshare.completablefuture.blocking.ManagedBlocking;
+import com.knowledgeshare.completablefuture.cache.AsyncCache;
+import com.knowledgeshare.completablefuture.combinators.Futures;
+import com.knowledgeshare.completablefuture.combinators.Hedger;
+import com.knowledgeshare.completablefuture.instrumentation.StageMetrics;
+import com.knowledgeshare.completablefuture.logging.StageLog;
+import com.knowledgeshare.completablefuture.pipeline.Pipeline;
+import com.knowledgeshare.completablefuture.primitive.DoubleFuture;
+import com.knowledgeshare.completablefuture.resilience.AdaptiveBulkhead;
+import com.knowledgeshare.completablefuture.resilience.CallNotPermittedException;
+import com.knowledgeshare.completablefuture.resilience.CircuitBreaker;
+import com.knowledgeshare.completablefuture.resilience.Retry;
+import com.knowledgeshare.completablefuture.scope.TaskScope;
+import com.knowledgeshare.completablefuture.stream.FuturePublisher;
+import com.knowledgeshare.completablefuture.timeout.Deadline;
+import com.knowledgeshare.completablefuture.timeout.Timeouts;
+import com.knowledgeshare.completablefuture.timer.DelayScheduler;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
+import static com.knowledgeshare.completablefuture.executor.ExecutorConfiguration.CPU_EXECUTOR;
+import static com.knowledgeshare.completablefuture.executor.ExecutorConfiguration.IO_EXECUTOR;
+
 @Component
 public class Examples {
 
+    // Without an explicit executor every *Async method runs on ForkJoinPool.commonPool(), which is shared by the whole
+    // JVM (parallel streams included). Blocking calls go to the io pool and short computations to the cpu pool.
+    private final Executor ioExecutor;
+    private final Executor cpuExecutor;
+    private final DelayScheduler scheduler;
+    private final Timeouts timeouts;
+    private final Duration requestTimeout;
+    // Callbacks hand their output to a background writer instead of waiting on the console lock
+    private final StageLog stageLog;
+    private final BatchLoader<String, Long> userIdLoader;
+    private final BatchLoader<Long, Double> userCreditRatingLoader;
+    // Repeated lookups share the call that is already in flight or its cached result instead of starting a new one
+    private final AsyncCache<String, Long> userIdCache = new AsyncCache<>(10_000, Duration.ofMinutes(1));
+    private final AsyncCache<Long, Double> userCreditRatingCache = new AsyncCache<>(10_000, Duration.ofMinutes(1));
+    private final AsyncCache<Long, Double> weightInKgCache = new AsyncCache<>(10_000, Duration.ofMinutes(1));
+    private final AsyncCache<Long, Double> heightInCmCache = new AsyncCache<>(10_000, Duration.ofMinutes(1));
+    private final StageMetrics stageMetrics = new StageMetrics();
+    // Caps the calls in flight to each dependency. The limit shrinks when answers get slower than the threshold
+    // (the simulated calls take 5 seconds) and grows back while they stay fast
+    private final AdaptiveBulkhead userCreditRatingBulkhead = new AdaptiveBulkhead("userCreditRating", 20, 1, 200, Duration.ofSeconds(6), 0.9, 100);
+    private final AdaptiveBulkhead weightInKgBulkhead = new AdaptiveBulkhead("weightInKg", 20, 1, 200, Duration.ofSeconds(6), 0.9, 100);
+    // Opens once half of the last 20 address lookups failed, so callers get the fallback straight away for 30 seconds.
+    // An invalid id is the caller's mistake, not the service's, so it does not count towards opening
+    private final CircuitBreaker userAddressBreaker = new CircuitBreaker("userAddress", 20, 5, 0.5, Duration.ofSeconds(30), 3,
+            ex -> !(ex instanceof IllegalArgumentException));
+    private volatile boolean userAddressOutage;
+    private final Retry userAddressRetry;
+    // Address lookups for many users at once, a few chunks per cpu thread with 16 lookups in flight per chunk
+    private final BulkLookup<Long, String> userAddressLookup;
+    // Sends a backup to another replica once a read takes longer than 95% of recent ones (4 seconds until enough
+    // reads were seen) and keeps whichever answers first
+    private final Hedger replicaHedger;
+    private final AtomicInteger replicaReads = new AtomicInteger();
+    // Built once and reused. Both maps are fused into a single step that runs right after the remote call completes
+    private final Pipeline<String, String> greetingPipeline;
+
+    public Examples(@Qualifier(IO_EXECUTOR) Executor ioExecutor, @Qualifier(CPU_EXECUTOR) Executor cpuExecutor,
+                    DelayScheduler scheduler, @Value("${examples.timeout.request:15s}") Duration requestTimeout,
+                    StageLog stageLog) {
+        this.ioExecutor = ioExecutor;
+        this.cpuExecutor = cpuExecutor;
+        this.scheduler = scheduler;
+        this.timeouts = new Timeouts(scheduler);
+        this.requestTimeout = requestTimeout;
+        this.stageLog = stageLog;
+        this.greetingPipeline = Pipeline.<String>start()
+                .map(value -> {
+                    stageLog.log("Supply thread id: %s");
+
+                    return value;
+                })
+                .thenCompose(value -> delayed(value, 3))
+                .map(futureResult -> {
+                    stageLog.log("First apply thread id: %s");
+
+                    return "Hello " + futureResult;
+                })
+                .map(callBackResult -> {
+                    stageLog.log("Second apply thread id: %s");
+
+                    return callBackResult + "! How are you?";
+                });
+        this.userIdLoader = new BatchLoader<>(this::getUserIds, scheduler, Duration.ofMillis(10), 100);
+        this.userCreditRatingLoader = new BatchLoader<>(this::getUserCreditRatings, scheduler, Duration.ofMillis(10), 100);
+        // An invalid id fails the same way every time and an open breaker already said no, retrying either is pointless
+        this.userAddressRetry = new Retry(scheduler, 3, Duration.ofMillis(100), Duration.ofSeconds(2), 2.0,
+                ex -> !(ex instanceof IllegalArgumentException) && !(ex instanceof CallNotPermittedException));
+        this.userAddressLookup = new BulkLookup<>(this::getUserAddress, (userId, ex) -> "Not available", cpuExecutor,
+                threadCount(cpuExecutor), 16);
+        this.replicaHedger = new Hedger(scheduler, 0.95, Duration.ofSeconds(4), Duration.ofSeconds(1), 1000);
+        this.userAddressBreaker.addListener((name, from, to) ->
+                stageLog.log("Circuit breaker %s: %s -> %s", name, from, to));
+    }
+
     public String get() throws ExecutionException, InterruptedException {
-        System.out.println("Main thread id: " + Thread.currentThread().getId());
+        stageLog.log("Main thread id: %s");
 
         CompletableFuture<String> completableFuture = new CompletableFuture<>();
 
-        return completableFuture.get();
+        return await(completableFuture); // Nothing ever completes this future, without a timeout get() would block forever
     }
 
     public void complete() throws ExecutionException, InterruptedException {
-        CompletableFuture<String> completableFuture = CompletableFuture.supplyAsync(() -> {
-            try {
-                TimeUnit.SECONDS.sleep(5);
-            } catch (InterruptedException e) {
-                throw new IllegalStateException(e);
-            }
-
-            return "Task value";
-        });
+        CompletableFuture<String> completableFuture = delayed("Task value", 5);
 
         completableFuture.complete("Early completion value");
-        System.out.println(completableFuture.get());
+        stageLog.log("%s", await(completableFuture));
     }
 
     public void cancel() throws ExecutionException, InterruptedException {
-        CompletableFuture<String> completableFuture = CompletableFuture.supplyAsync(() -> {
+        // cancel(true) on a plain supplyAsync future does not interrupt its task, a blocking call would keep its thread
+        // for the full 5 seconds. A task forked in a scope is interrupted as soon as the request it belongs to is cancelled
+        try (TaskScope scope = new TaskScope(ioExecutor)) {
+            CompletableFuture<Void> started = new CompletableFuture<>();
+            CompletableFuture<String> blockingCall = scope.fork(() -> {
+                started.complete(null);
+                try {
+                    TimeUnit.SECONDS.sleep(5); // A legacy client that can only block
+                    return "Blocking value";
+                } catch (InterruptedException e) {
+                    stageLog.log("Blocking call interrupted on thread id: %s");
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted");
+                }
+            });
+            CompletableFuture<String> request = scope.bind(blockingCall.thenApply(value -> "Result: " + value));
+
+            await(started);
+            request.cancel(true); // The caller gives up on the request while the call is blocked
+
             try {
-                TimeUnit.SECONDS.sleep(5);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+                stageLog.log("%s", await(request));
+            } catch (CancellationException e) {
+                stageLog.log("Request cancelled, the blocking call was interrupted instead of running for 5 seconds");
             }
+        } // close() returns once the interrupted task has left its thread
 
-            return "Task value";
-        });
+        CompletableFuture<String> completableFuture = delayed("Task value", 5);
 
         completableFuture.cancel(true);
-        System.out.println(completableFuture.get());
+        stageLog.log("%s", await(completableFuture));
     }
 
     public void runAsync() throws ExecutionException, InterruptedException {
-        System.out.println("Main thread id: " + Thread.currentThread().getId());
+        stageLog.log("Main thread id: %s");
 
         CompletableFuture<Void> completableFuture = CompletableFuture.runAsync(() -> {
-            System.out.println("I'll run in a separate thread than the main thread, current thread id: " + Thread.currentThread().getId());
+            stageLog.log("I'll run in a separate thread than the main thread, current thread id: %s");
             // Notice this just prints the string and returns nothing (CompletableFuture<Void>)
-        });
+        }, cpuExecutor);
 
-        completableFuture.get();
+        await(completableFuture);
     }
 
     public void supplyAsync() throws ExecutionException, InterruptedException {
-        System.out.println("Main thread id: " + Thread.currentThread().getId());
+        stageLog.log("Main thread id: %s");
 
         CompletableFuture<String> completableFuture = CompletableFuture.supplyAsync(() -> {
-            try {
-                TimeUnit.SECONDS.sleep(5); // Some other task that executes for 5 seconds as an example
-            } catch (InterruptedException e) {
-                throw new IllegalStateException(e);
-            }
-
             return "I'll run in a separate thread than the main thread, current thread id: " + Thread.currentThread().getId();
-        });
+        }, ioExecutor).thenCompose(value -> delayed(value, 5)); // Some other task that executes for 5 seconds as an example
 
-        System.out.println(completableFuture.get());
+        stageLog.log("%s", await(completableFuture));
     }
 
     public void thenApplyCallback(String name) throws ExecutionException, InterruptedException {
         CompletableFuture<String> completableFuture = CompletableFuture.supplyAsync(() -> {
-            System.out.println("Supply thread id: " + Thread.currentThread().getId());
-
-            try {
-                TimeUnit.SECONDS.sleep(5);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            stageLog.log("Supply thread id: %s");
 
             return name;
-        }).thenApply(futureResult -> {
-            System.out.println("Apply thread id: " + Thread.currentThread().getId());
+        }, ioExecutor).thenCompose(value -> delayed(value, 5)).thenApply(futureResult -> {
+            stageLog.log("Apply thread id: %s");
 
             return "Hello " + futureResult; // Notice thenApply is only executed after supplyAsync completed
         });
 
-        System.out.println(completableFuture.get());
+        stageLog.log("%s", await(completableFuture));
     }
 
     public void thenApplyAsync(String name) throws ExecutionException, InterruptedException {
         CompletableFuture<String> completableFuture = CompletableFuture.supplyAsync(() -> {
-            System.out.println("Supply thread id: " + Thread.currentThread().getId());
-
-            try {
-                TimeUnit.SECONDS.sleep(4);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            stageLog.log("Supply thread id: %s");
 
             return name;
-        }).thenApplyAsync(futureResult -> {
+        }, ioExecutor).thenCompose(value -> delayed(value, 4)).thenApplyAsync(futureResult -> {
             // Essentially this execution should not wait for the result of supplyAsync
-            System.out.println("Apply async thread id: " + Thread.currentThread().getId());
+            stageLog.log("Apply async thread id: %s");
 
             return "Hello " + futureResult;
-        });
+        }, cpuExecutor);
 
-        System.out.println(completableFuture.get());
+        stageLog.log("%s", await(completableFuture));
     }
 
     public void thenAcceptCallback(String name) throws ExecutionException, InterruptedException {
         CompletableFuture<Void> completableFuture = CompletableFuture.supplyAsync(() -> {
-            System.out.println("Supply thread id: " + Thread.currentThread().getId());
-
-            try {
-                TimeUnit.SECONDS.sleep(5);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            stageLog.log("Supply thread id: %s");
 
             return name;
-        }).thenAccept(futureResult -> {
-            System.out.println("Accept thread id: " + Thread.currentThread().getId());
+        }, ioExecutor).thenCompose(value -> delayed(value, 5)).thenAccept(futureResult -> {
+            stageLog.log("Accept thread id: %s");
 
-            System.out.println("Hello " + futureResult); // Notice nothing is being returned here since you cannot return anything here
+            stageLog.log("Hello %s", futureResult); // Notice nothing is being returned here since you cannot return anything here
         });
 
-        completableFuture.get();
+        await(completableFuture);
     }
 
     public void thenRunCallback(int x, int y) throws ExecutionException, InterruptedException {
         CompletableFuture<Void> completableFuture = CompletableFuture.supplyAsync(() -> {
-            System.out.println("Supply thread id: " + Thread.currentThread().getId());
+            stageLog.log("Supply thread id: %s");
 
             int sum = x + y;
-            System.out.println(x + " + " + y + " = " + sum);
-
-            try {
-                TimeUnit.SECONDS.sleep(5);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            stageLog.log("%s + %s = %s", x, y, sum);
 
             return sum;
-        }).thenRun(() -> {
-            System.out.println("Run thread id: " + Thread.currentThread().getId());
+        }, ioExecutor).thenCompose(value -> delayed(value, 5)).thenRun(() -> {
+            stageLog.log("Run thread id: %s");
 
-            System.out.println("Calculation is complete");
+            stageLog.log("Calculation is complete");
         });
 
-        completableFuture.get();
+        await(completableFuture);
     }
 
     public void thenApplyChainedCallbacks(String name) throws ExecutionException, InterruptedException {
         // Attach your callback chain
         CompletableFuture<String> completableFuture = CompletableFuture.supplyAsync(() -> {
-            System.out.println("Supply thread id: " + Thread.currentThread().getId());
-
-            try {
-                TimeUnit.SECONDS.sleep(3);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            stageLog.log("Supply thread id: %s");
 
             return name;
-        }).thenApply(futureResult -> {
-            System.out.println("First apply thread id: " + Thread.currentThread().getId());
+        }, ioExecutor).thenCompose(value -> delayed(value, 3)).thenApply(futureResult -> {
+            stageLog.log("First apply thread id: %s");
 
             return "Hello " + futureResult;
         }).thenApply(callBackResult -> {
-            System.out.println("Second apply thread id: " + Thread.currentThread().getId());
+            stageLog.log("Second apply thread id: %s");
 
             return callBackResult + "! How are you?";
         });
 
-        System.out.println(completableFuture.get());
+        stageLog.log("%s", await(completableFuture));
+    }
+
+    public void thenApplyChainedCallbacksFused(String name) throws ExecutionException, InterruptedException {
+        // The same chain as thenApplyChainedCallbacks, but only the start and the remote call create futures. Both
+        // applies always print the same thread id, they run together on the thread that completed the remote call
+        stageLog.log("%s", await(greetingPipeline.runAsync(name, ioExecutor)));
+    }
+
+    public void thenApplyChainedCallbacksInstrumented(String name) throws ExecutionException, InterruptedException {
+        // The same chain as thenApplyChainedCallbacks, but every stage is named and timed instead of printing thread ids
+        CompletableFuture<String> completableFuture = stageMetrics.chain("thenApplyChainedCallbacks")
+                .supplyAsync("supply", () -> name, ioExecutor)
+                .thenCompose("remoteCall", value -> delayed(value, 3))
+                .thenApply("firstApply", futureResult -> "Hello " + futureResult)
+                .thenApply("secondApply", callBackResult -> callBackResult + "! How are you?")
+                .toCompletableFuture();
+
+        stageLog.log("%s", await(completableFuture));
+        stageLog.log("%s", stageMetrics.snapshot()); // Queue wait and run time per stage, latency and thread hops per chain
     }
 
     public void thenComposeCallback(String userName) throws ExecutionException, InterruptedException {
         // If you use thenApply the final result with be a nested CompletableFuture
-        System.out.println("Nested completable future");
-        System.out.println("-------------------------");
+        stageLog.log("Nested completable future");
+        stageLog.log("-------------------------");
+        Deadline deadline = Deadline.after(requestTimeout); // Both waits below share one budget
         CompletableFuture<CompletableFuture<Double>> result = getUserId(userName).thenApply(userId -> getUserCreditRating(userId));
-        CompletableFuture<Double> userCreditRatingFuture = result.get();
-        System.out.println(String.format("Final credit rating for %s is %s", userName, userCreditRatingFuture.get()));
+        CompletableFuture<Double> userCreditRatingFuture = ManagedBlocking.get(timeouts.orTimeout(result, deadline));
+        stageLog.log("Final credit rating for %s is %s", userName, ManagedBlocking.get(timeouts.orTimeout(userCreditRatingFuture, deadline)));
 
         //Use thenCompose to flatten the result
-        System.out.println("\nFlattened completable future");
-        System.out.println("----------------------------");
-        CompletableFuture<Double> flattenedResult = getUserId(userName).thenCompose(userId -> getUserCreditRating(userId));
-        System.out.println(String.format("Final credit rating for %s is %s", userName, flattenedResult.get()));
+        stageLog.log("\nFlattened completable future");
+        stageLog.log("----------------------------");
+        stageLog.log("Final credit rating for %s is %s", userName, ManagedBlocking.get(creditRating(userName)));
+    }
+
+    public CompletableFuture<Double> creditRating(String userName) {
+        Deadline deadline = Deadline.after(requestTimeout);
+        return timeouts.orTimeout(getUserId(userName), deadline)
+                .thenCompose(timeouts.within(deadline, userId -> getUserCreditRating(userId))); // Only gets the budget getUserId left over
     }
 
     CompletableFuture<Long> getUserId(String userName) {
-        return CompletableFuture.supplyAsync(() -> {
-            System.out.println("User name thread id: " + Thread.currentThread().getId());
+        return userIdCache.get(userName, this::fetchUserId);
+    }
 
-            try {
-                TimeUnit.SECONDS.sleep(5); // Some other task that get the user id based on the user name as an example
-            } catch (InterruptedException e) {
-                throw new IllegalStateException(e);
-            }
+    private CompletableFuture<Long> fetchUserId(String userName) {
+        return CompletableFuture.supplyAsync(() -> {
+            stageLog.log("User name thread id: %s");
 
             return 147L;
-        });
+        }, ioExecutor).thenCompose(value -> delayed(value, 5)); // Some other task that get the user id based on the user name as an example
     }
 
     CompletableFuture<Double> getUserCreditRating(Long userId) {
+        return userCreditRatingCache.get(userId, id -> userCreditRatingBulkhead.call(() -> fetchUserCreditRating(id)));
+    }
+
+    private CompletableFuture<Double> fetchUserCreditRating(Long userId) {
         return CompletableFuture.supplyAsync(() -> {
-            System.out.println("Credit rating thread id: " + Thread.currentThread().getId());
+            stageLog.log("Credit rating thread id: %s");
 
-            try {
-                TimeUnit.SECONDS.sleep(5); // Some other task that get the user credit rating based on the user id as an example
-            } catch (InterruptedException e) {
-                throw new IllegalStateException(e);
+            return 10.5;
+        }, ioExecutor).thenCompose(value -> delayed(value, 5)); // Some other task that get the user credit rating based on the user id as an example
+    }
+
+    public void thenComposeBatchedCallback(List<String> userNames) throws ExecutionException, InterruptedException {
+        // Every user still gets its own future, but the lookups that arrive together are collected into one
+        // getUserIds and one getUserCreditRatings call instead of one remote call per user per step
+        Map<String, CompletableFuture<Double>> creditRatings = new LinkedHashMap<>();
+        for (String userName : userNames) {
+            creditRatings.put(userName, userIdLoader.load(userName).thenCompose(userCreditRatingLoader::load));
+        }
+
+        for (Map.Entry<String, CompletableFuture<Double>> creditRating : creditRatings.entrySet()) {
+            stageLog.log("Final credit rating for %s is %s", creditRating.getKey(), await(creditRating.getValue()));
+        }
+        stageLog.log("User id batches: %s", userIdLoader.stats());
+        stageLog.log("Credit rating batches: %s", userCreditRatingLoader.stats());
+    }
+
+    CompletableFuture<Map<String, Long>> getUserIds(List<String> userNames) {
+        return CompletableFuture.supplyAsync(() -> {
+            stageLog.log("User names %s thread id: %s", String.valueOf(userNames));
+
+            Map<String, Long> userIds = new LinkedHashMap<>();
+            for (String userName : userNames) {
+                userIds.put(userName, 147L + userIds.size());
             }
+            return userIds;
+        }, ioExecutor).thenCompose(value -> delayed(value, 5)); // One remote call that gets the user ids for the whole batch
+    }
 
-            return 10.5;
-        });
+    CompletableFuture<Map<Long, Double>> getUserCreditRatings(List<Long> userIds) {
+        return CompletableFuture.supplyAsync(() -> {
+            stageLog.log("Credit ratings %s thread id: %s", String.valueOf(userIds));
+
+            Map<Long, Double> creditRatings = new LinkedHashMap<>();
+            for (Long userId : userIds) {
+                creditRatings.put(userId, 10.5);
+            }
+            return creditRatings;
+        }, ioExecutor).thenCompose(value -> delayed(value, 5)); // One remote call that gets the credit ratings for the whole batch
     }
 
     public void thenCombineCallBack(Long userId) throws ExecutionException, InterruptedException {
-        CompletableFuture<Double> bmi = getWeightInKg(userId).thenCombine(getHeightInCm(userId), (weight, height) -> {
+        stageLog.log("User with id %s has a BMI of %s", userId, await(bmi(userId)));
+    }
+
+    public CompletableFuture<Double> bmi(Long userId) {
+        // The scope owns both lookups. If one fails, or the caller stops waiting (times out or cancels the result), the
+        // other is cancelled instead of running on for nothing. The cache cancels the load itself once no caller is left
+        // waiting on it, which stops the simulated call and gives its bulkhead permit back
+        TaskScope scope = new TaskScope(ioExecutor);
+        CompletableFuture<Double> weightInKg = scope.forkAsync(() -> getWeightInKg(userId));
+        CompletableFuture<Double> heightInCm = scope.forkAsync(() -> getHeightInCm(userId));
+        CompletableFuture<Double> bmi = scope.bind(weightInKg.thenCombine(heightInCm, (weight, height) -> {
             Double heightInMeter = height / 100;
             return weight / (heightInMeter * heightInMeter);
-        });
+        }));
         // Notice that getWeightInKg and getHeightInCm runs simultaneously on different threads
 
-        System.out.println(String.format("User with id %s has a BMI of %s", userId, bmi.get()));
+        bmi.whenComplete((value, ex) -> scope.close()); // Only async children, so closing never blocks the completing thread
+        return bmi;
     }
 
-    private CompletableFuture<Double> getWeightInKg(Long userId) {
-        return CompletableFuture.supplyAsync(() -> {
-            System.out.println("Weight thread id: " + Thread.currentThread().getId());
-
-            try {
-                TimeUnit.SECONDS.sleep(5); // Some other task that gets the user weight based on the user id as an example
-            } catch (InterruptedException e) {
-                throw new IllegalStateException(e);
+    public void thenCombineCallBackUnboxed(Long userId) throws ExecutionException, InterruptedException {
+        // The same BMI as thenCombineCallBack, but weight, height and the BMI stay plain doubles, so the combination
+        // allocates no Double at all. The values have to be produced as doubles to begin with: wrapping the cached
+        // CompletableFuture<Double> lookups in DoubleFuture.from would cost more than the boxes it saves
+        DoubleFuture weightInKg = delayedDouble(() -> {
+            if (userId < 1) {
+                throw new IllegalArgumentException("User id cannot be less than 1");
             }
 
             return 65.0;
+        }, 5);
+        DoubleFuture heightInCm = delayedDouble(() -> 177.8, 5);
+        DoubleFuture bmi = weightInKg.thenCombine(heightInCm, (weight, height) -> {
+            double heightInMeter = height / 100;
+            return weight / (heightInMeter * heightInMeter);
         });
+
+        stageLog.log("User with id %s has a BMI of %s", userId, await(bmi.toCompletableFuture())); // Boxed once, at the edge
+    }
+
+    private CompletableFuture<Double> getWeightInKg(Long userId) {
+        return weightInKgCache.get(userId, id -> weightInKgBulkhead.call(() -> fetchWeightInKg(id)));
+    }
+
+    private CompletableFuture<Double> fetchWeightInKg(Long userId) {
+        if (userId < 1) {
+            CompletableFuture<Double> invalid = new CompletableFuture<>();
+            invalid.completeExceptionally(new IllegalArgumentException("User id cannot be less than 1"));
+            return invalid;
+        }
+
+        // Some other task that gets the user weight based on the user id as an example. The value is produced when the
+        // simulated call returns, so cancelling the future before then stops the call
+        return scheduler.supplyDelayed(() -> {
+            stageLog.log("Weight thread id: %s");
+
+            return 65.0;
+        }, Duration.ofSeconds(5), ioExecutor);
     }
 
     private CompletableFuture<Double> getHeightInCm(Long userId) {
-        return CompletableFuture.supplyAsync(() -> {
-            System.out.println("Height thread id: " + Thread.currentThread().getId());
+        return heightInCmCache.get(userId, this::fetchHeightInCm);
+    }
 
-            try {
-                TimeUnit.SECONDS.sleep(5); // Some other task that gets the user height based on the user id as an example
-            } catch (InterruptedException e) {
-                throw new IllegalStateException(e);
-            }
+    private CompletableFuture<Double> fetchHeightInCm(Long userId) {
+        // Some other task that gets the user height based on the user id as an example, cancellable like the weight
+        return scheduler.supplyDelayed(() -> {
+            stageLog.log("Height thread id: %s");
 
             return 177.8;
-        });
+        }, Duration.ofSeconds(5), ioExecutor);
     }
 
     public void allOf() throws ExecutionException, InterruptedException {
@@ -274,99 +456,233 @@ public class Examples {
         CompletableFuture<Void> combined = CompletableFuture.allOf(futureOne, futureTwo, futureThree);
         // All of above will run all the futures simultaneously
 
-        // Notice above the return type is Void, you will have to manually get the result from each future like this
-        String manualResult = futureOne.get() + futureTwo.get() + futureThree.get();
-        System.out.println("Manual result: " + manualResult);
-
-        // OR you can use join to do the above automatically for you
-        String joinResult = Stream.of(futureOne, futureTwo, futureThree)
+        // Notice above the return type is Void, you will have to get the result from each future yourself. Doing that in
+        // a callback of combined means join never blocks, since every future is done by the time it runs
+        CompletableFuture<String> joinResult = combined.thenApply(done -> Stream.of(futureOne, futureTwo, futureThree)
                 .map(CompletableFuture::join)
-                .collect(Collectors.joining(""));
-        System.out.println("Join result: " + joinResult);
-    }
+                .collect(Collectors.joining("")));
 
-    private CompletableFuture<String> futureOne() {
-        return CompletableFuture.supplyAsync(() -> {
-            System.out.println("Future one thread id: " + Thread.currentThread().getId());
+        // OR use the typed allOf, which completes with the list of results directly
+        CompletableFuture<String> typedResult = Futures.allOf(Arrays.asList(futureOne, futureTwo, futureThree))
+                .thenApply(results -> String.join("", results));
 
-            try {
-                TimeUnit.SECONDS.sleep(5);
-            } catch (InterruptedException e) {
-                throw new IllegalStateException(e);
+        // You can also handle each result as soon as it arrives instead of waiting for the slowest future
+        Futures.onEachCompleted(Arrays.asList(futureOne, futureTwo, futureThree), (result, ex) -> {
+            if (ex != null) {
+                stageLog.log("Failed: %s", ex);
+            } else {
+                stageLog.log("Completed: %s", result); // "you?" first, "How " last
             }
-
-            return "How ";
         });
+
+        stageLog.log("Join result: %s", await(joinResult));
+        stageLog.log("Typed result: %s", await(typedResult));
     }
 
-    private CompletableFuture<String> futureTwo() {
-        return CompletableFuture.supplyAsync(() -> {
-            System.out.println("Future two thread id: " + Thread.currentThread().getId());
+    CompletableFuture<String> futureOne() {
+        // The value is produced when the simulated call returns, so cancelling the future before then stops the call
+        return scheduler.supplyDelayed(() -> {
+            stageLog.log("Future one thread id: %s");
 
-            try {
-                TimeUnit.SECONDS.sleep(4);
-            } catch (InterruptedException e) {
-                throw new IllegalStateException(e);
-            }
+            return "How ";
+        }, Duration.ofSeconds(5), ioExecutor);
+    }
+
+    CompletableFuture<String> futureTwo() {
+        // The value is produced when the simulated call returns, so cancelling the future before then stops the call
+        return scheduler.supplyDelayed(() -> {
+            stageLog.log("Future two thread id: %s");
 
             return "are ";
-        });
+        }, Duration.ofSeconds(4), ioExecutor);
     }
 
-    private CompletableFuture<String> futureThree() {
-        return CompletableFuture.supplyAsync(() -> {
-            System.out.println("Future three thread id: " + Thread.currentThread().getId());
-
-            try {
-                TimeUnit.SECONDS.sleep(3);
-            } catch (InterruptedException e) {
-                throw new IllegalStateException(e);
-            }
+    CompletableFuture<String> futureThree() {
+        // The value is produced when the simulated call returns, so cancelling the future before then stops the call
+        return scheduler.supplyDelayed(() -> {
+            stageLog.log("Future three thread id: %s");
 
             return "you?";
-        });
+        }, Duration.ofSeconds(3), ioExecutor);
+    }
+
+    public CompletableFuture<String> greeting() {
+        // The same three calls as allOf, without waiting on them. Fails as soon as one of them fails
+        return Futures.allOfFailFast(Arrays.asList(futureOne(), futureTwo(), futureThree()))
+                .thenApply(results -> String.join("", results));
     }
 
     public void anyOf() throws ExecutionException, InterruptedException {
         CompletableFuture<Object> anyFuture = CompletableFuture.anyOf(futureOne(), futureTwo(), futureThree());
-        System.out.println("Result of the future that completed first: " + anyFuture.get());
+        stageLog.log("Result of the future that completed first: %s", await(anyFuture));
         // futureThree completed first since it only took 3 seconds where the other 2 futures took longer than 3 seconds
+        // Notice futureOne and futureTwo still print their thread ids afterwards, anyOf leaves the losers running
+
+        CompletableFuture<String> firstFuture = Futures.firstOf(Arrays.asList(futureOne(), futureTwo(), futureThree()));
+        stageLog.log("Result of the future that completed first: %s", await(firstFuture));
+        // firstOf is typed and cancels futureOne and futureTwo as soon as futureThree wins, so they never print
+
+        stageLog.log("Result of the hedged read: %s", await(hedgedRead()));
+        // Rather than racing different calls from the start, a hedged read only sends a second copy of the same call
+        // once the first is slower than usual. The first replica takes 10 seconds, so after 4 seconds a backup goes to
+        // the next one, which answers 3 seconds later. 7 seconds instead of 10, and the slow read is cancelled
     }
 
-    public void exceptionally(Long userId) throws ExecutionException, InterruptedException {
-        CompletableFuture<String> userAddress = CompletableFuture.supplyAsync(() -> {
-            if (userId < 1) {
-                throw new IllegalArgumentException("User id cannot be less than 1");
+    public CompletableFuture<String> hedgedRead() {
+        return replicaHedger.call(this::readFromReplica);
+    }
+
+    public Hedger replicaHedger() {
+        return replicaHedger;
+    }
+
+    // Simulates a read served by several replicas, where every other read lands on one that takes 10 seconds
+    private CompletableFuture<String> readFromReplica() {
+        long seconds = replicaReads.getAndIncrement() % 2 == 0 ? 10 : 3;
+        return scheduler.supplyDelayed(() -> {
+            stageLog.log("Replica read thread id: %s");
+
+            return "you?";
+        }, Duration.ofSeconds(seconds), ioExecutor);
+    }
+
+    public void streamedFanOut(long userCount, int maxConcurrency) throws ExecutionException, InterruptedException {
+        // allOf needs every future up front. The publisher pulls user ids from a lazy source and only starts a lookup
+        // when the subscriber asked for a result, so memory stays the same for 10 users or 10 million
+        Iterable<Long> userIds = () -> LongStream.rangeClosed(1, userCount).iterator();
+        FuturePublisher<Long, Double> creditRatings = new FuturePublisher<>(userIds, this::getUserCreditRating, maxConcurrency);
+
+        CompletableFuture<Double> averageCreditRating = new CompletableFuture<>();
+        creditRatings.subscribe(new Subscriber<Double>() {
+            private Subscription subscription;
+            private long count;
+            private double sum;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(maxConcurrency); // Signalling demand is what starts the lookups
             }
 
-            return "FNB Building, 1 Enterprise Rd, Fairland, Johannesburg, 2170";
-        }).exceptionally(ex -> {
-            System.out.println(String.format("Could not retrieve user address for user with id: %s, exception: %s", userId, ex));
+            @Override
+            public void onNext(Double creditRating) {
+                count++;
+                sum += creditRating;
+                subscription.request(1); // Keep maxConcurrency lookups going, one more for every result handled
+            }
+
+            @Override
+            public void onError(Throwable ex) {
+                averageCreditRating.completeExceptionally(ex);
+            }
+
+            @Override
+            public void onComplete() {
+                averageCreditRating.complete(count == 0 ? 0 : sum / count);
+            }
+        });
+
+        stageLog.log("Average credit rating of %s users: %s", userCount, await(averageCreditRating));
+    }
+
+    public void exceptionally(Long userId) throws ExecutionException, InterruptedException {
+        CompletableFuture<String> userAddress = getUserAddress(userId).exceptionally(ex -> {
+            stageLog.log("Could not retrieve user address for user with id: %s, exception: %s", userId, ex);
             return "Not available";
         });
 
-        System.out.println(userAddress.get());
+        stageLog.log("%s", await(userAddress));
     }
 
     public void handle(Long userId) throws ExecutionException, InterruptedException {
-        CompletableFuture<String> userAddress = CompletableFuture.supplyAsync(() -> {
-            if (userId < 1) {
-                throw new IllegalArgumentException("User id cannot be less than 1");
-            }
+        stageLog.log("%s", await(userAddress(userId)));
+    }
 
-            return "FNB Building, 1 Enterprise Rd, Fairland, Johannesburg, 2170";
-        }).handle((result, ex) -> { // Here you will get the result from the above future as well, and this will ALWAYS execute
+    public void handleAll(List<Long> userIds) throws ExecutionException, InterruptedException {
+        // One call for all the users instead of a loop with a future per user. Every user gets an answer, in the order
+        // asked for: a lookup that fails falls back to "Not available" like in handle, without failing the others
+        List<String> userAddresses = await(userAddressLookup.lookupAll(userIds));
+
+        for (int i = 0; i < userIds.size(); i++) {
+            stageLog.log("User with id %s lives at %s", userIds.get(i), userAddresses.get(i));
+        }
+    }
+
+    public CompletableFuture<String> userAddress(Long userId) {
+        return getUserAddress(userId).handle((result, ex) -> { // Here you will get the result from the above future as well, and this will ALWAYS execute
             // If an exception occurs, then the res argument will be null, otherwise, the ex argument will be null
-            System.out.println("Result from future: " + result);
+            stageLog.log("Result from future: %s", result);
 
             if (ex != null) {
-                System.out.println(String.format("Could not retrieve user address for user with id: %s, exception: %s", userId, ex));
+                stageLog.log("Could not retrieve user address for user with id: %s, exception: %s", userId, ex);
                 return "Not available";
             }
 
             return result;
         });
+    }
+
+    public CircuitBreaker userAddressBreaker() {
+        return userAddressBreaker;
+    }
+
+    // Makes every address lookup fail as if the service was down, until switched off again
+    void simulateUserAddressOutage(boolean outage) {
+        this.userAddressOutage = outage;
+    }
+
+    public StageMetrics stageMetrics() {
+        return stageMetrics;
+    }
+
+    // Transient failures are retried with backoff on the timer, and every attempt goes through the breaker. While the
+    // breaker is open the lookup fails immediately with a CallNotPermittedException and exceptionally/handle fall back.
+    private CompletableFuture<String> getUserAddress(Long userId) {
+        return userAddressRetry.call(() -> userAddressBreaker.call(() -> CompletableFuture.supplyAsync(() -> {
+            if (userId < 1) {
+                throw new IllegalArgumentException("User id cannot be less than 1");
+            }
+            if (userAddressOutage) {
+                throw new IllegalStateException("User address service unavailable");
+            }
+
+            return "FNB Building, 1 Enterprise Rd, Fairland, Johannesburg, 2170";
+        }, cpuExecutor)));
+    }
+
+    // Simulates the latency of a remote call. Instead of parking a pool thread in TimeUnit.SECONDS.sleep, the shared
+    // timer completes the future once the delay has passed, so thousands of calls can be in flight on a few threads.
+    private <T> CompletableFuture<T> delayed(T value, long seconds) {
+        return scheduler.delayed(value, Duration.ofSeconds(seconds), ioExecutor);
+    }
+
+    // Same as delayed, for a double that is never boxed
+    private DoubleFuture delayedDouble(DoubleSupplier value, long seconds) {
+        DoubleFuture future = new DoubleFuture();
+        scheduler.schedule(() -> ioExecutor.execute(() -> {
+            try {
+                future.complete(value.getAsDouble());
+            } catch (RuntimeException ex) {
+                future.completeExceptionally(ex);
+            }
+        }), () -> future.completeExceptionally(DelayScheduler.closedException()), seconds, TimeUnit.SECONDS);
+        return future;
+    }
+
+    // The chunks are sized to the threads the executor really has, examples.executor.cpu.max-size, which need not
+    // match the number of processors
+    static int threadCount(Executor executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
 
-        System.out.println(userAddress.get());
+    // Java 8 has no get-with-deadline on CompletableFuture itself, so every blocking wait is bounded by the request
+    // timeout. A stuck call then fails with a TimeoutException (wrapped in an ExecutionException) and releases the caller.
+    private <T> T await(CompletableFuture<T> future) throws ExecutionException, InterruptedException {
+        // Managed, so if an example is ever called from an io, cpu or fork join pool thread the pool makes up for the
+        // blocked thread with an extra one
+        return ManagedBlocking.get(timeouts.orTimeout(future, requestTimeout));
     }
 }
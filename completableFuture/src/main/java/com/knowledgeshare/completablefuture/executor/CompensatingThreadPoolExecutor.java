@@ -0,0 +1,75 @@
+package com.knowledgeshare.completablefuture.executor;
+
+import com.knowledgeshare.completablefuture.blocking.BlockingDetector;
+import com.knowledgeshare.completablefuture.blocking.ManagedBlocking;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ThreadPoolExecutor} that makes up for threads waiting in a {@link ManagedBlocking} call, the way a
+ * {@code ForkJoinPool} does. While one of its threads waits, the core and maximum size are one larger, so a queued
+ * task, possibly the very one the waiting thread depends on, still gets a thread. At most {@code maxCompensation}
+ * threads are added at a time; past that a waiting thread simply blocks. The extra threads are ordinary pool threads
+ * and time out after the keep alive once the waits are over.
+ * <p>
+ * Tasks are also handed to the {@link BlockingDetector}, if there is one.
+ */
+final class CompensatingThreadPoolExecutor extends ThreadPoolExecutor implements ManagedBlocking.Compensation {
+
+    private final String name;
+    private final BlockingDetector blockingDetector; // null when blocking detection is off
+    private final int maxCompensation;
+    private int compensating; // guarded by this
+
+    CompensatingThreadPoolExecutor(String name, ExecutorProperties.Pool pool, BlockingDetector blockingDetector) {
+        super(pool.getCoreSize(), pool.getMaxSize(), pool.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(pool.getQueueCapacity()), new NamedThreadFactory(name),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.name = name;
+        this.blockingDetector = blockingDetector;
+        this.maxCompensation = pool.getMaxSize();
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        ManagedBlocking.enterPool(this);
+        if (blockingDetector != null) {
+            blockingDetector.beforeExecute(name, thread);
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable task, Throwable ex) {
+        if (blockingDetector != null) {
+            blockingDetector.afterExecute();
+        }
+        ManagedBlocking.leavePool();
+    }
+
+    @Override
+    public synchronized boolean beginBlocking() {
+        if (compensating == maxCompensation || isShutdown()) {
+            return false;
+        }
+        compensating++;
+        setMaximumPoolSize(getMaximumPoolSize() + 1); // The core size may never exceed the maximum, so raise that first
+        setCorePoolSize(getCorePoolSize() + 1); // Starts a thread right away if tasks are queued
+        return true;
+    }
+
+    @Override
+    public synchronized void endBlocking() {
+        compensating--;
+        setCorePoolSize(getCorePoolSize() - 1);
+        setMaximumPoolSize(getMaximumPoolSize() - 1);
+    }
+
+    /**
+     * Threads added for the pool threads waiting in a managed block right now.
+     */
+    synchronized int getCompensating() {
+        return compensating;
+    }
+}
@@ -0,0 +1,17 @@
+package com.knowledgeshare.completablefuture.executor;
+
+/**
+ * How the io executor runs its tasks.
+ */
+public enum ExecutionMode {
+
+    /**
+     * A bounded pool of platform threads, sized by {@code examples.executor.io.*}. Works on every Java version.
+     */
+    PLATFORM,
+
+    /**
+     * A new virtual thread per task. Needs Java 21 or later.
+     */
+    VIRTUAL
+}
@@ -0,0 +1,108 @@
+package com.knowledgeshare.completablefuture.executor;
+
+import com.knowledgeshare.completablefuture.blocking.BlockingDetector;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Dedicated, bounded executors so async work never lands on {@code ForkJoinPool.commonPool()}.
+ * <p>
+ * Blocking work goes to {@link #IO_EXECUTOR}, short computations to {@link #CPU_EXECUTOR}. Both reject new tasks
+ * once their queue is full rather than letting the backlog grow without limit. With
+ * {@code examples.executor.mode=virtual} the io executor starts a virtual thread per task instead (Java 21+).
+ * With {@code examples.executor.blocking-detection.enabled=true} pool threads that block while running a task are
+ * logged with their stage and stack trace. A pool thread waiting in a
+ * {@link com.knowledgeshare.completablefuture.blocking.ManagedBlocking} call is made up for with an extra thread.
+ */
+@Configuration
+@EnableConfigurationProperties(ExecutorProperties.class)
+public class ExecutorConfiguration {
+
+    public static final String IO_EXECUTOR = "ioExecutor";
+    public static final String CPU_EXECUTOR = "cpuExecutor";
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutorConfiguration.class);
+
+    @Bean
+    @ConditionalOnMissingBean
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty("examples.executor.blocking-detection.enabled")
+    public BlockingDetector blockingDetector(ExecutorProperties properties) {
+        return new BlockingDetector(properties.getBlockingDetection().getThreshold(), report -> log.warn("{}", report));
+    }
+
+    @Bean(name = IO_EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService ioExecutor(ExecutorProperties properties, MeterRegistry meterRegistry,
+                                      ObjectProvider<BlockingDetector> blockingDetector) {
+        if (properties.getMode() == ExecutionMode.VIRTUAL) {
+            // A blocked virtual thread gives its carrier thread back, so this executor needs no bound, no queue and no
+            // compensation for managed blocks. Running and completed tasks are still counted, and blocking still reported
+            return monitor(new MonitoredExecutorService("io", VirtualThreads.newVirtualThreadPerTaskExecutor(),
+                    blockingDetector.getIfAvailable()), "io", meterRegistry);
+        }
+        return monitor(newThreadPool("io", properties.getIo(), blockingDetector.getIfAvailable()), "io", meterRegistry);
+    }
+
+    @Bean(name = CPU_EXECUTOR, destroyMethod = "shutdown")
+    public ThreadPoolExecutor cpuExecutor(ExecutorProperties properties, MeterRegistry meterRegistry,
+                                          ObjectProvider<BlockingDetector> blockingDetector) {
+        return monitor(newThreadPool("cpu", properties.getCpu(), blockingDetector.getIfAvailable()), "cpu", meterRegistry);
+    }
+
+    public static ThreadPoolExecutor newThreadPool(String name, ExecutorProperties.Pool pool) {
+        return newThreadPool(name, pool, null);
+    }
+
+    /**
+     * Same as {@link #newThreadPool(String, ExecutorProperties.Pool)}, with the tasks watched by
+     * {@code blockingDetector} if it is not {@code null}.
+     */
+    public static ThreadPoolExecutor newThreadPool(String name, ExecutorProperties.Pool pool, BlockingDetector blockingDetector) {
+        return new CompensatingThreadPoolExecutor(name, pool, blockingDetector);
+    }
+
+    private static ThreadPoolExecutor monitor(ThreadPoolExecutor executor, String name, MeterRegistry meterRegistry) {
+        Gauge.builder("executor.queue.depth", executor, e -> e.getQueue().size())
+                .tag("name", name)
+                .description("Tasks waiting in the executor queue")
+                .register(meterRegistry);
+        Gauge.builder("executor.active.threads", executor, ThreadPoolExecutor::getActiveCount)
+                .tag("name", name)
+                .description("Threads currently running a task")
+                .register(meterRegistry);
+        Gauge.builder("executor.pool.size", executor, ThreadPoolExecutor::getPoolSize)
+                .tag("name", name)
+                .description("Threads currently in the pool")
+                .register(meterRegistry);
+        return executor;
+    }
+
+    private static MonitoredExecutorService monitor(MonitoredExecutorService executor, String name, MeterRegistry meterRegistry) {
+        Gauge.builder("executor.active.threads", executor, MonitoredExecutorService::getActiveCount)
+                .tag("name", name)
+                .description("Threads currently running a task")
+                .register(meterRegistry);
+        FunctionCounter.builder("executor.completed.tasks", executor, MonitoredExecutorService::getCompletedTaskCount)
+                .tag("name", name)
+                .description("Tasks run to completion")
+                .register(meterRegistry);
+        return executor;
+    }
+}
@@ -0,0 +1,138 @@
+package com.knowledgeshare.completablefuture.executor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Sizing for the dedicated executors, bound from {@code examples.executor.*} in application.properties.
+ */
+@ConfigurationProperties(prefix = "examples.executor")
+public class ExecutorProperties {
+
+    /**
+     * Whether the io pool uses platform threads or, on Java 21+, a virtual thread per task.
+     */
+    private ExecutionMode mode = ExecutionMode.PLATFORM;
+
+    /**
+     * Pool for tasks that mostly wait on something else (remote calls, sleeps, locks).
+     */
+    private Pool io = new Pool(16, 64, 1000);
+
+    /**
+     * Pool for short, purely computational callbacks. Sized to the number of cores.
+     */
+    private Pool cpu = new Pool(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(), 1000);
+
+    /**
+     * Reports pool threads that block while running a task.
+     */
+    private BlockingDetection blockingDetection = new BlockingDetection();
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    public void setMode(ExecutionMode mode) {
+        this.mode = mode;
+    }
+
+    public Pool getIo() {
+        return io;
+    }
+
+    public void setIo(Pool io) {
+        this.io = io;
+    }
+
+    public Pool getCpu() {
+        return cpu;
+    }
+
+    public void setCpu(Pool cpu) {
+        this.cpu = cpu;
+    }
+
+    public BlockingDetection getBlockingDetection() {
+        return blockingDetection;
+    }
+
+    public void setBlockingDetection(BlockingDetection blockingDetection) {
+        this.blockingDetection = blockingDetection;
+    }
+
+    public static class Pool {
+
+        private int coreSize;
+        private int maxSize;
+        private int queueCapacity;
+        private Duration keepAlive = Duration.ofSeconds(60);
+
+        public Pool() {
+        }
+
+        public Pool(int coreSize, int maxSize, int queueCapacity) {
+            this.coreSize = coreSize;
+            this.maxSize = maxSize;
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getCoreSize() {
+            return coreSize;
+        }
+
+        public void setCoreSize(int coreSize) {
+            this.coreSize = coreSize;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public Duration getKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(Duration keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+    }
+
+    public static class BlockingDetection {
+
+        private boolean enabled;
+        private Duration threshold = Duration.ofMillis(100);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * How long a task's thread must stay blocked before it is reported.
+         */
+        public Duration getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(Duration threshold) {
+            this.threshold = threshold;
+        }
+    }
+}
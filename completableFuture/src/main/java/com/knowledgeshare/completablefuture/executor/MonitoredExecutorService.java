@@ -0,0 +1,84 @@
+package com.knowledgeshare.completablefuture.executor;
+
+import com.knowledgeshare.completablefuture.blocking.BlockingDetector;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the running and completed tasks of an executor that has no counters of its own, like the virtual thread per
+ * task executor, and hands its tasks to the {@link BlockingDetector} the way the pool hooks do.
+ */
+final class MonitoredExecutorService extends AbstractExecutorService {
+
+    private final String name;
+    private final ExecutorService delegate;
+    private final BlockingDetector blockingDetector; // null when blocking detection is off
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+
+    MonitoredExecutorService(String name, ExecutorService delegate, BlockingDetector blockingDetector) {
+        this.name = name;
+        this.delegate = delegate;
+        this.blockingDetector = blockingDetector;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        delegate.execute(() -> {
+            active.incrementAndGet();
+            if (blockingDetector != null) {
+                blockingDetector.beforeExecute(name, Thread.currentThread());
+            }
+            try {
+                task.run();
+            } finally {
+                if (blockingDetector != null) {
+                    blockingDetector.afterExecute();
+                }
+                active.decrementAndGet();
+                completed.increment();
+            }
+        });
+    }
+
+    /**
+     * Tasks running right now. On virtual threads this is also the number of threads.
+     */
+    int getActiveCount() {
+        return active.get();
+    }
+
+    long getCompletedTaskCount() {
+        return completed.sum();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,114 @@
+package com.knowledgeshare.completablefuture.instrumentation;
+
+import com.knowledgeshare.completablefuture.blocking.BlockingDetector;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A named, timed step of a {@link StageMetrics.Chain}. Mirrors the {@link CompletableFuture} methods used in
+ * Examples, each taking a stage name; {@link #toCompletableFuture()} ends the chain and records its end-to-end
+ * latency.
+ */
+public final class Stage<T> {
+
+    private final StageMetrics.Chain chain;
+    private CompletableFuture<T> future;
+
+    // Written by the stage before its future completes, so dependent stages always see them
+    private volatile long completedNanos;
+    private volatile long threadId;
+
+    private Stage(StageMetrics.Chain chain) {
+        this.chain = chain;
+    }
+
+    static <T> Stage<T> supplyAsync(StageMetrics.Chain chain, String name, Supplier<T> supplier, Executor executor,
+                                    long readyNanos, long readyThreadId) {
+        Stage<T> next = new Stage<>(chain);
+        StageMetrics.StageHistograms histograms = chain.stage(name);
+        next.future = CompletableFuture.supplyAsync(() -> next.run(histograms, readyNanos, readyThreadId, supplier), executor);
+        return next;
+    }
+
+    public <U> Stage<U> thenApply(String name, Function<? super T, ? extends U> fn) {
+        Stage<U> next = new Stage<>(chain);
+        StageMetrics.StageHistograms histograms = chain.stage(name);
+        next.future = future.thenApply(value -> next.run(histograms, completedNanos, threadId, () -> fn.apply(value)));
+        return next;
+    }
+
+    public <U> Stage<U> thenApplyAsync(String name, Function<? super T, ? extends U> fn, Executor executor) {
+        Stage<U> next = new Stage<>(chain);
+        StageMetrics.StageHistograms histograms = chain.stage(name);
+        next.future = future.thenApplyAsync(value -> next.run(histograms, completedNanos, threadId, () -> fn.apply(value)), executor);
+        return next;
+    }
+
+    /**
+     * The run time of a composed stage lasts until the future returned by {@code fn} completes, and it counts as a hop
+     * if that future completes on a different thread than the one that called {@code fn}.
+     */
+    public <U> Stage<U> thenCompose(String name, Function<? super T, ? extends CompletableFuture<U>> fn) {
+        Stage<U> next = new Stage<>(chain);
+        StageMetrics.StageHistograms histograms = chain.stage(name);
+        next.future = future.thenCompose(value -> {
+            long start = next.start(histograms, completedNanos, threadId);
+            long startThreadId = Thread.currentThread().getId();
+            return BlockingDetector.inStage(histograms.name, () -> fn.apply(value)).whenComplete((result, ex) -> {
+                if (Thread.currentThread().getId() != startThreadId) {
+                    chain.hop(); // the composed future completed on another thread, which then runs the next stage
+                }
+                next.finish(histograms, start);
+            });
+        });
+        return next;
+    }
+
+    public <U, V> Stage<V> thenCombine(String name, Stage<U> other, BiFunction<? super T, ? super U, ? extends V> fn) {
+        Stage<V> next = new Stage<>(chain);
+        StageMetrics.StageHistograms histograms = chain.stage(name);
+        next.future = future.thenCombine(other.future, (value, otherValue) -> {
+            // The stage is ready once the later of the two inputs completed
+            boolean thisLast = completedNanos - other.completedNanos >= 0;
+            return next.run(histograms, thisLast ? completedNanos : other.completedNanos,
+                    thisLast ? threadId : other.threadId, () -> fn.apply(value, otherValue));
+        });
+        return next;
+    }
+
+    /**
+     * Ends the chain. The returned future completes after the chain's end-to-end latency and thread hops are recorded.
+     */
+    public CompletableFuture<T> toCompletableFuture() {
+        return future.whenComplete((result, ex) -> chain.complete());
+    }
+
+    private <R> R run(StageMetrics.StageHistograms histograms, long readyNanos, long readyThreadId, Supplier<R> body) {
+        long start = start(histograms, readyNanos, readyThreadId);
+        try {
+            return BlockingDetector.inStage(histograms.name, body); // Blocking inside is reported with the stage name
+        } finally {
+            finish(histograms, start);
+        }
+    }
+
+    private long start(StageMetrics.StageHistograms histograms, long readyNanos, long readyThreadId) {
+        long start = System.nanoTime();
+        histograms.queueWait.record(start - readyNanos);
+        if (Thread.currentThread().getId() != readyThreadId) {
+            chain.hop();
+        }
+        return start;
+    }
+
+    private void finish(StageMetrics.StageHistograms histograms, long start) {
+        long end = System.nanoTime();
+        histograms.runTime.record(end - start);
+        completedNanos = end;
+        threadId = Thread.currentThread().getId();
+    }
+}
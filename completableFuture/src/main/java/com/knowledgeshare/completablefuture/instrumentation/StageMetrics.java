@@ -0,0 +1,193 @@
+package com.knowledgeshare.completablefuture.instrumentation;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collects per-stage and per-chain latencies for chains built with {@link #chain(String)}.
+ * <p>
+ * For every named stage it records how long the stage waited to start after its input was ready (queue wait, which
+ * includes time spent in an executor queue) and how long it ran. For every chain it records the end-to-end latency
+ * and how many times the chain moved to a different thread. Recording is lock-free, so this can stay on in
+ * production; {@link #snapshot()} reads the numbers back without stopping the writers.
+ */
+public class StageMetrics {
+
+    private final ConcurrentMap<String, StageHistograms> stages = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ChainHistograms> chains = new ConcurrentHashMap<>();
+
+    /**
+     * Starts a new execution of the chain called {@code name}. Stage names are scoped to the chain, so the same stage
+     * name can be used in different chains.
+     */
+    public Chain chain(String name) {
+        return new Chain(name, chains.computeIfAbsent(name, key -> new ChainHistograms()));
+    }
+
+    public Snapshot snapshot() {
+        Map<String, StageSnapshot> stageSnapshots = new TreeMap<>();
+        stages.forEach((name, histograms) -> stageSnapshots.put(name,
+                new StageSnapshot(histograms.queueWait.snapshot(), histograms.runTime.snapshot())));
+
+        Map<String, ChainSnapshot> chainSnapshots = new TreeMap<>();
+        chains.forEach((name, histograms) -> chainSnapshots.put(name,
+                new ChainSnapshot(histograms.endToEnd.snapshot(), histograms.totalHops.sum(), histograms.maxHops.get())));
+
+        return new Snapshot(stageSnapshots, chainSnapshots);
+    }
+
+    StageHistograms stage(String chain, String stage) {
+        return stages.computeIfAbsent(chain + "/" + stage, StageHistograms::new);
+    }
+
+    /**
+     * One execution of a named chain. Create it where the request starts and build the stages from it.
+     */
+    public final class Chain {
+
+        private final String name;
+        private final ChainHistograms histograms;
+        private final long startNanos = System.nanoTime();
+        private final long startThreadId = Thread.currentThread().getId();
+        private final AtomicInteger hops = new AtomicInteger();
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Chain(String name, ChainHistograms histograms) {
+            this.name = name;
+            this.histograms = histograms;
+        }
+
+        public <T> Stage<T> supplyAsync(String stage, Supplier<T> supplier, Executor executor) {
+            return Stage.supplyAsync(this, stage, supplier, executor, startNanos, startThreadId);
+        }
+
+        StageHistograms stage(String stage) {
+            return StageMetrics.this.stage(name, stage);
+        }
+
+        void hop() {
+            hops.incrementAndGet();
+        }
+
+        void complete() {
+            if (completed.compareAndSet(false, true)) {
+                histograms.endToEnd.record(System.nanoTime() - startNanos);
+                histograms.totalHops.add(hops.get());
+                histograms.maxHops.accumulateAndGet(hops.get(), Math::max);
+            }
+        }
+    }
+
+    static final class StageHistograms {
+
+        final String name; // chain/stage
+        final LatencyHistogram queueWait = new LatencyHistogram();
+        final LatencyHistogram runTime = new LatencyHistogram();
+
+        StageHistograms(String name) {
+            this.name = name;
+        }
+    }
+
+    static final class ChainHistograms {
+
+        final LatencyHistogram endToEnd = new LatencyHistogram();
+        final LongAdder totalHops = new LongAdder();
+        final AtomicLong maxHops = new AtomicLong();
+    }
+
+    public static final class StageSnapshot {
+
+        private final LatencyHistogram.Snapshot queueWait;
+        private final LatencyHistogram.Snapshot runTime;
+
+        private StageSnapshot(LatencyHistogram.Snapshot queueWait, LatencyHistogram.Snapshot runTime) {
+            this.queueWait = queueWait;
+            this.runTime = runTime;
+        }
+
+        public LatencyHistogram.Snapshot getQueueWait() {
+            return queueWait;
+        }
+
+        public LatencyHistogram.Snapshot getRunTime() {
+            return runTime;
+        }
+    }
+
+    public static final class ChainSnapshot {
+
+        private final LatencyHistogram.Snapshot endToEnd;
+        private final long totalHops;
+        private final long maxHops;
+
+        private ChainSnapshot(LatencyHistogram.Snapshot endToEnd, long totalHops, long maxHops) {
+            this.endToEnd = endToEnd;
+            this.totalHops = totalHops;
+            this.maxHops = maxHops;
+        }
+
+        public LatencyHistogram.Snapshot getEndToEnd() {
+            return endToEnd;
+        }
+
+        public long getExecutions() {
+            return endToEnd.getCount();
+        }
+
+        /**
+         * Highest number of thread hops seen in one execution of the chain.
+         */
+        public long getMaxHops() {
+            return maxHops;
+        }
+
+        public double getMeanHops() {
+            return getExecutions() == 0 ? 0 : (double) totalHops / getExecutions();
+        }
+    }
+
+    /**
+     * Everything recorded so far, keyed by {@code chain/stage} and by chain name.
+     */
+    public static final class Snapshot {
+
+        private final Map<String, StageSnapshot> stages;
+        private final Map<String, ChainSnapshot> chains;
+
+        private Snapshot(Map<String, StageSnapshot> stages, Map<String, ChainSnapshot> chains) {
+            this.stages = Collections.unmodifiableMap(stages);
+            this.chains = Collections.unmodifiableMap(chains);
+        }
+
+        public Map<String, StageSnapshot> getStages() {
+            return stages;
+        }
+
+        public Map<String, ChainSnapshot> getChains() {
+            return chains;
+        }
+
+        /**
+         * One line per chain and per stage, for logs or a debug endpoint.
+         */
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            chains.forEach((name, chain) -> builder.append(String.format("chain %s: endToEnd[%s] hops[mean=%.1f max=%d]%n",
+                    name, chain.getEndToEnd(), chain.getMeanHops(), chain.getMaxHops())));
+            stages.forEach((name, stage) -> builder.append(String.format("stage %s: queueWait[%s] run[%s]%n",
+                    name, stage.getQueueWait(), stage.getRunTime())));
+            return builder.toString();
+        }
+    }
+}
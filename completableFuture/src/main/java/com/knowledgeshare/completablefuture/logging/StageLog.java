@@ -0,0 +1,374 @@
+package com.knowledgeshare.completablefuture.logging;
+
+import com.knowledgeshare.completablefuture.executor.NamedThreadFactory;
+
+import java.io.PrintStream;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log lines from callbacks without making pool threads wait on the console.
+ * <p>
+ * {@code System.out.println} takes the {@link PrintStream} lock and writes to the console on the calling thread, so
+ * every pool thread that prints queues up behind the others. Here a callback only copies the template, its arguments
+ * and its thread id into a slot of a preallocated ring buffer, which takes one CAS and no lock. A single background
+ * thread does the formatting and the writing, in batches. It formats every event of a batch straight into one buffer
+ * and prints that buffer once. Templates that only use {@code %s}, {@code %1$s} etc. are filled in without going
+ * through {@link Formatter}, which parses the template on every call; any other template goes through one
+ * {@code Formatter} kept for the writer's lifetime. When there is nothing to write it parks until the next event is
+ * logged, so an idle log costs no cpu.
+ * <p>
+ * A full buffer never blocks the caller. Once it is three quarters full only one event in {@code sampleRate} is kept,
+ * and when it is full the event is dropped. The writer reports how many events were sampled out or dropped, so gaps
+ * in the output are visible.
+ * <p>
+ * The caller's thread id is passed to the template after the arguments. A template without arguments prints it with
+ * {@code %s}, a template with one argument with {@code %2$s}, and so on:
+ *
+ * <pre>
+ * stageLog.log("Supply thread id: %s");
+ * stageLog.log("Final credit rating for %s is %s", userName, creditRating);
+ * </pre>
+ * <p>
+ * There are no varargs overloads, so logging does not allocate an array. Primitive arguments are still boxed; the
+ * thread id is not.
+ * <p>
+ * The arguments are formatted later, on the writer thread. Pass values that do not change afterwards, like strings,
+ * boxed numbers or immutable objects. A mutable argument, e.g. a list the caller keeps adding to, is printed as it is
+ * when the writer gets to it, and its {@code toString()} may race with the thread changing it. Pass
+ * {@code String.valueOf(arg)} instead where that matters.
+ */
+public class StageLog implements AutoCloseable {
+
+    private static final long FLUSH_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1); // Only matters if the writer died
+    private static final int BATCH_SIZE = 256; // Events formatted per write, so output keeps flowing under load
+
+    private final Slot[] slots;
+    private final int mask;
+    private final int sampleThreshold;
+    private final int sampleRate;
+    private final PrintStream out;
+    private final Thread writer;
+
+    private final AtomicLong tail = new AtomicLong(); // Next position to claim
+    private volatile long head; // Next position to write out, only advanced by the writer once a batch is written
+    private volatile boolean closed;
+    private volatile boolean writerParked; // Set by the writer before it parks, producers that see it unpark it
+    private final Queue<Thread> flushing = new ConcurrentLinkedQueue<>(); // Unparked by the writer after each batch
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param capacity   number of events the buffer holds, rounded up to a power of two
+     * @param sampleRate above three quarters full, one in this many events is kept
+     */
+    public StageLog(int capacity, int sampleRate, PrintStream out) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2");
+        }
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("Sample rate must be at least 1");
+        }
+
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot(i);
+        }
+        this.mask = size - 1;
+        this.sampleThreshold = size - size / 4;
+        this.sampleRate = sampleRate;
+        this.out = out;
+        this.writer = new NamedThreadFactory("stage-log").newThread(this::write);
+        this.writer.start();
+    }
+
+    public void log(String template) {
+        offer(template, null, null, null, 0);
+    }
+
+    public void log(String template, Object arg) {
+        offer(template, arg, null, null, 1);
+    }
+
+    public void log(String template, Object arg1, Object arg2) {
+        offer(template, arg1, arg2, null, 2);
+    }
+
+    public void log(String template, Object arg1, Object arg2, Object arg3) {
+        offer(template, arg1, arg2, arg3, 3);
+    }
+
+    /**
+     * Waits until every event logged before the call has been written, e.g. before printing something directly.
+     */
+    public void flush() {
+        long target = tail.get();
+        if (head >= target) {
+            return;
+        }
+
+        // Added before head is checked again, and the writer advances head before it wakes the queue, so either this
+        // thread sees the new head or the writer sees it waiting. No wake-up is lost
+        Thread current = Thread.currentThread();
+        flushing.add(current);
+        try {
+            while (head < target && writer.isAlive()) {
+                LockSupport.parkNanos(this, FLUSH_PARK_NANOS);
+            }
+        } finally {
+            flushing.remove(current);
+        }
+    }
+
+    /**
+     * Writes what is left in the buffer and stops the writer. Events logged afterwards are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getSampledOut() {
+        return sampledOut.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void offer(String template, Object arg1, Object arg2, Object arg3, int argCount) {
+        if (closed) {
+            dropped.increment();
+            return;
+        }
+
+        long position = tail.get();
+        if (position - head >= sampleThreshold && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            sampledOut.increment();
+            return;
+        }
+
+        Slot slot;
+        while (true) {
+            slot = slots[(int) position & mask];
+            long difference = slot.sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                dropped.increment(); // The writer has not freed this slot yet, the buffer is full
+                return;
+            } else {
+                position = tail.get(); // Another thread claimed it first
+            }
+        }
+
+        slot.template = template;
+        slot.arg1 = arg1;
+        slot.arg2 = arg2;
+        slot.arg3 = arg3;
+        slot.argCount = argCount;
+        slot.threadId = Thread.currentThread().getId();
+        slot.sequence = position + 1; // Publishes the event to the writer
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void write() {
+        StringBuilder batch = new StringBuilder();
+        Formatter formatter = new Formatter(batch);
+        long reportedLoss = 0;
+
+        while (true) {
+            boolean closing = closed; // Read before draining, so nothing published before close() is missed
+            long position = head;
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Slot slot = slots[(int) position & mask];
+                if (slot.sequence != position + 1) {
+                    break;
+                }
+
+                format(slot, batch, formatter);
+                batch.append(System.lineSeparator());
+                slot.template = null;
+                slot.arg1 = null;
+                slot.arg2 = null;
+                slot.arg3 = null;
+                slot.sequence = position + slots.length; // Free for the producer one lap ahead
+                position++;
+                written.increment();
+            }
+
+            long loss = sampledOut.sum() + dropped.sum();
+            if (loss > reportedLoss) {
+                batch.append(String.format("Stage log overloaded: %s events sampled out, %s dropped so far%n",
+                        sampledOut.sum(), dropped.sum()));
+                reportedLoss = loss;
+            }
+            if (batch.length() > 0) {
+                out.print(batch);
+                out.flush();
+                batch.setLength(0);
+                head = position;
+                for (Thread waiting : flushing) {
+                    LockSupport.unpark(waiting);
+                }
+            } else if (closing) {
+                return;
+            } else {
+                // Checked again after the flag is set: a producer publishes, then reads the flag, so either it sees the
+                // flag and unparks the writer, or the writer sees its event here. No wake-up is lost
+                writerParked = true;
+                Slot next = slots[(int) position & mask];
+                if (next.sequence != position + 1 && !closed) {
+                    LockSupport.park(this);
+                }
+                writerParked = false;
+            }
+        }
+    }
+
+    private static void format(Slot slot, StringBuilder batch, Formatter formatter) {
+        int start = batch.length();
+        try {
+            if (!appendSimple(slot, batch)) {
+                batch.setLength(start);
+                formatWith(slot, formatter);
+            }
+        } catch (RuntimeException ex) {
+            // A bad template or a failing toString() must not stop the writer
+            batch.setLength(start);
+            batch.append(slot.template).append(" (could not format: ").append(ex).append(')');
+        }
+    }
+
+    /**
+     * Fills in a template whose only specifiers are {@code %s}, {@code %<index>$s}, {@code %n} and {@code %%}, the
+     * same way {@code String.format} would. Returns false, leaving whatever it appended, for any other template.
+     */
+    private static boolean appendSimple(Slot slot, StringBuilder batch) {
+        String template = slot.template;
+        int length = template.length();
+        int nextArg = 0;
+        int from = 0;
+        for (int percent = template.indexOf('%'); percent >= 0; percent = template.indexOf('%', from)) {
+            batch.append(template, from, percent);
+            if (percent + 1 == length) {
+                return false;
+            }
+
+            char conversion = template.charAt(percent + 1);
+            int index;
+            if (conversion == 's') {
+                index = nextArg++;
+                from = percent + 2;
+            } else if (conversion == 'n') {
+                batch.append(System.lineSeparator());
+                from = percent + 2;
+                continue;
+            } else if (conversion == '%') {
+                batch.append('%');
+                from = percent + 2;
+                continue;
+            } else if (conversion >= '1' && conversion <= '9' && percent + 3 < length
+                    && template.charAt(percent + 2) == '$' && template.charAt(percent + 3) == 's') {
+                index = conversion - '1';
+                from = percent + 4;
+            } else {
+                return false; // Flags, widths and other conversions are left to the Formatter
+            }
+
+            if (index > slot.argCount) {
+                return false; // Let the Formatter report the missing argument
+            }
+            if (index == slot.argCount) {
+                batch.append(slot.threadId); // After the arguments
+                continue;
+            }
+            Object arg = argument(slot, index);
+            if (arg instanceof Formattable) {
+                return false;
+            }
+            batch.append(arg);
+        }
+        batch.append(template, from, length);
+        return true;
+    }
+
+    private static Object argument(Slot slot, int index) {
+        switch (index) {
+            case 0:
+                return slot.arg1;
+            case 1:
+                return slot.arg2;
+            default:
+                return slot.arg3;
+        }
+    }
+
+    private static void formatWith(Slot slot, Formatter formatter) {
+        Long threadId = slot.threadId;
+        switch (slot.argCount) {
+            case 0:
+                formatter.format(slot.template, threadId);
+                break;
+            case 1:
+                formatter.format(slot.template, slot.arg1, threadId);
+                break;
+            case 2:
+                formatter.format(slot.template, slot.arg1, slot.arg2, threadId);
+                break;
+            default:
+                formatter.format(slot.template, slot.arg1, slot.arg2, slot.arg3, threadId);
+                break;
+        }
+    }
+
+    /**
+     * One event. {@code sequence} says whose turn it is: {@code position} when free for the producer claiming that
+     * position, {@code position + 1} once the event is published for the writer.
+     */
+    private static final class Slot {
+
+        private volatile long sequence;
+        private String template;
+        private Object arg1;
+        private Object arg2;
+        private Object arg3;
+        private int argCount;
+        private long threadId;
+
+        private Slot(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.knowledgeshare.completablefuture.logging;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(StageLogProperties.class)
+public class StageLogConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public StageLog stageLog(StageLogProperties properties) {
+        return new StageLog(properties.getCapacity(), properties.getSampleRate(), System.out);
+    }
+}
@@ -0,0 +1,37 @@
+package com.knowledgeshare.completablefuture.logging;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Buffer size and overload behaviour of the stage log, bound from {@code examples.stage-log.*} in
+ * application.properties.
+ */
+@ConfigurationProperties(prefix = "examples.stage-log")
+public class StageLogProperties {
+
+    /**
+     * Events the ring buffer holds before new ones are dropped. Rounded up to a power of two.
+     */
+    private int capacity = 8192;
+
+    /**
+     * Once the buffer is three quarters full, only one event in this many is kept.
+     */
+    private int sampleRate = 10;
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+}
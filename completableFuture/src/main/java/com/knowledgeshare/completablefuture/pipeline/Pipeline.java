@@ -0,0 +1,198 @@
+package com.knowledgeshare.completablefuture.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A reusable chain of transforms that only creates a {@link CompletableFuture} where the chain really goes async.
+ * <p>
+ * Every {@code thenApply} on a {@link CompletableFuture} allocates a new future plus a completion node, and whether the
+ * callback runs on the completing thread or the caller's depends on timing. A pipeline fuses consecutive
+ * {@link #map} steps into one function when it is built, so they run back to back on the same thread as a single
+ * task. Work leaves the thread only at the boundaries you declare: {@link #thenCompose} waits for another future and
+ * {@link #async} hands off to an executor. A run allocates the result future, one small state object and whatever the
+ * boundaries need, no matter how many maps there are.
+ * <p>
+ * Pipelines are immutable, so build them once and run them as often as you like.
+ *
+ * <pre>
+ * Pipeline&lt;String, String&gt; greeting = Pipeline.&lt;String&gt;start()
+ *         .thenCompose(this::lookup)
+ *         .map(value -&gt; "Hello " + value)
+ *         .map(value -&gt; value + "!");
+ * CompletableFuture&lt;String&gt; result = greeting.runAsync("Almarie", executor);
+ * </pre>
+ */
+public final class Pipeline<I, O> {
+
+    private static final Pipeline<?, ?> EMPTY = new Pipeline<>(Collections.emptyList());
+
+    private final List<Step> steps;
+
+    private Pipeline(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Pipeline<T, T> start() {
+        return (Pipeline<T, T>) EMPTY;
+    }
+
+    /**
+     * Adds a synchronous transform. It is fused with the maps directly before it, so it costs a method call per run.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> Pipeline<I, R> map(Function<? super O, ? extends R> fn) {
+        Function<Object, Object> next = (Function<Object, Object>) fn;
+        Step last = steps.isEmpty() ? null : steps.get(steps.size() - 1);
+        if (last instanceof MapStep) {
+            return replaceLast(new MapStep(((MapStep) last).fn.andThen(next)));
+        }
+        return append(new MapStep(next));
+    }
+
+    /**
+     * Continues with the result of the future {@code fn} returns. If that future is already complete the pipeline
+     * carries on in place, otherwise the rest runs on the thread that completes it.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> Pipeline<I, R> thenCompose(Function<? super O, ? extends CompletionStage<R>> fn) {
+        return append(new ComposeStep((Function<Object, CompletionStage<?>>) (Function<?, ?>) fn));
+    }
+
+    /**
+     * Runs the rest of the pipeline as a new task on {@code executor}, e.g. to move cpu work off an io thread.
+     */
+    public Pipeline<I, O> async(Executor executor) {
+        return append(new AsyncStep(executor));
+    }
+
+    /**
+     * Runs the pipeline for {@code input}, starting with a single task on {@code executor}.
+     */
+    public CompletableFuture<O> runAsync(I input, Executor executor) {
+        Run<O> run = new Run<>(steps, input);
+        try {
+            executor.execute(run);
+        } catch (RuntimeException e) {
+            run.result.completeExceptionally(e);
+        }
+        return run.result;
+    }
+
+    private <R> Pipeline<I, R> append(Step step) {
+        List<Step> appended = new ArrayList<>(steps.size() + 1);
+        appended.addAll(steps);
+        appended.add(step);
+        return new Pipeline<>(Collections.unmodifiableList(appended));
+    }
+
+    private <R> Pipeline<I, R> replaceLast(Step step) {
+        List<Step> replaced = new ArrayList<>(steps);
+        replaced.set(replaced.size() - 1, step);
+        return new Pipeline<>(Collections.unmodifiableList(replaced));
+    }
+
+    private interface Step {
+    }
+
+    private static final class MapStep implements Step {
+
+        private final Function<Object, Object> fn;
+
+        private MapStep(Function<Object, Object> fn) {
+            this.fn = fn;
+        }
+    }
+
+    private static final class ComposeStep implements Step {
+
+        private final Function<Object, CompletionStage<?>> fn;
+
+        private ComposeStep(Function<Object, CompletionStage<?>> fn) {
+            this.fn = fn;
+        }
+    }
+
+    private static final class AsyncStep implements Step {
+
+        private final Executor executor;
+
+        private AsyncStep(Executor executor) {
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * The state of one run. The same object is the task handed to executors and the callback attached to composed
+     * futures, and both hand-offs publish {@code next} and {@code value} to the thread that resumes.
+     */
+    private static final class Run<O> implements Runnable, BiConsumer<Object, Throwable> {
+
+        private final List<Step> steps;
+        private final CompletableFuture<O> result = new CompletableFuture<>();
+        private int next;
+        private Object value;
+
+        private Run(List<Step> steps, Object input) {
+            this.steps = steps;
+            this.value = input;
+        }
+
+        @Override
+        public void run() {
+            resume();
+        }
+
+        @Override
+        public void accept(Object composed, Throwable ex) {
+            if (ex != null) {
+                result.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                return;
+            }
+            value = composed;
+            resume();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void resume() {
+            if (result.isDone()) {
+                return; // Cancelled or timed out by the caller, skip the remaining steps
+            }
+
+            try {
+                Object current = value;
+                for (int i = next; i < steps.size(); i++) {
+                    Step step = steps.get(i);
+                    if (step instanceof MapStep) {
+                        current = ((MapStep) step).fn.apply(current);
+                    } else if (step instanceof ComposeStep) {
+                        CompletableFuture<?> composed = ((ComposeStep) step).fn.apply(current).toCompletableFuture();
+                        if (composed.isDone() && !composed.isCompletedExceptionally()) {
+                            current = composed.join();
+                            continue;
+                        }
+                        next = i + 1;
+                        composed.whenComplete(this);
+                        return;
+                    } else {
+                        next = i + 1;
+                        value = current;
+                        ((AsyncStep) step).executor.execute(this);
+                        return;
+                    }
+                }
+                result.complete((O) current);
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.knowledgeshare.completablefuture.primitive;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleFunction;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleToLongFunction;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A future of a plain {@code double}, for numeric chains that would otherwise box every intermediate value.
+ * <p>
+ * A {@code CompletableFuture<Double>} allocates a {@code Double} for every value it carries, and a
+ * {@code thenCombine} lambda that does arithmetic on {@code Double} parameters unboxes and reboxes along the way. Here
+ * {@link #thenApply} and {@link #thenCombine} take primitive functions, so a chain allocates its futures and one small
+ * node per step, and no boxes:
+ *
+ * <pre>
+ * DoubleFuture weight = DoubleFuture.supplyAsync(() -&gt; weightInKg(userId), executor);
+ * DoubleFuture height = DoubleFuture.supplyAsync(() -&gt; heightInCm(userId), executor);
+ * double bmi = weight.thenCombine(height, (kg, cm) -&gt; kg / (cm / 100 * cm / 100)).join();
+ * </pre>
+ * <p>
+ * {@link #from(CompletableFuture)} and {@link #toCompletableFuture()} convert at the edges. Each conversion costs a
+ * box and a callback, so keep as much of the chain as possible in between. Like {@code thenApply} on a
+ * {@code CompletableFuture}, dependent functions run on the thread that completes the future, or on the caller if it
+ * is already done. A failure skips the functions and fails every dependent with the same exception.
+ */
+public final class DoubleFuture extends PrimitiveFuture {
+
+    public static DoubleFuture completed(double value) {
+        DoubleFuture future = new DoubleFuture();
+        future.complete(value);
+        return future;
+    }
+
+    public static DoubleFuture failed(Throwable ex) {
+        DoubleFuture future = new DoubleFuture();
+        future.completeExceptionally(ex);
+        return future;
+    }
+
+    /**
+     * Runs {@code supplier} on {@code executor} and completes with what it returns.
+     */
+    public static DoubleFuture supplyAsync(DoubleSupplier supplier, Executor executor) {
+        DoubleFuture future = new DoubleFuture();
+        executor.execute(() -> {
+            try {
+                future.complete(supplier.getAsDouble());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Completes with the value of {@code future}, unboxed. A null value fails with a {@link NullPointerException}.
+     */
+    public static DoubleFuture from(CompletableFuture<? extends Number> future) {
+        DoubleFuture converted = new DoubleFuture();
+        future.whenComplete((value, ex) -> {
+            if (ex != null) {
+                converted.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            } else if (value == null) {
+                converted.completeExceptionally(new NullPointerException("Future completed with null"));
+            } else {
+                converted.complete(value.doubleValue());
+            }
+        });
+        return converted;
+    }
+
+    public boolean complete(double value) {
+        return completeBits(Double.doubleToRawLongBits(value));
+    }
+
+    // Completes this future from an action of the future it depends on
+    boolean completeNested(double value) {
+        return completeBitsNested(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Waits for the value. Throws like {@code CompletableFuture.join()} if the future failed.
+     */
+    public double join() {
+        awaitDone();
+        return Double.longBitsToDouble(reportJoin());
+    }
+
+    /**
+     * The value if the future is done, otherwise {@code valueIfAbsent}. Throws like {@link #join()} if it failed.
+     */
+    public double getNow(double valueIfAbsent) {
+        return isDone() ? Double.longBitsToDouble(reportJoin()) : valueIfAbsent;
+    }
+
+    public DoubleFuture thenApply(DoubleUnaryOperator fn) {
+        DoubleFuture target = new DoubleFuture();
+        push(new Apply(this, target, fn));
+        return target;
+    }
+
+    public LongFuture thenApplyToLong(DoubleToLongFunction fn) {
+        LongFuture target = new LongFuture();
+        push(new ApplyToLong(this, target, fn));
+        return target;
+    }
+
+    /**
+     * Leaves the primitive chain: {@code fn} turns the value into an object, e.g. a response.
+     */
+    public <R> CompletableFuture<R> thenApplyToObj(DoubleFunction<? extends R> fn) {
+        CompletableFuture<R> target = new CompletableFuture<>();
+        push(new ApplyToObj<>(this, target, fn));
+        return target;
+    }
+
+    /**
+     * Completes with {@code fn} applied to both values once both futures are done. Fails as soon as {@code this}
+     * fails, or once {@code other} fails after {@code this} completed.
+     */
+    public DoubleFuture thenCombine(DoubleFuture other, DoubleBinaryOperator fn) {
+        DoubleFuture target = new DoubleFuture();
+        push(new Combine(this, other, target, fn));
+        return target;
+    }
+
+    public CompletableFuture<Double> toCompletableFuture() {
+        return thenApplyToObj(Double::valueOf);
+    }
+
+    double value() {
+        return Double.longBitsToDouble(bits());
+    }
+
+    private static final class Apply extends Completion {
+
+        private final DoubleFuture source;
+        private final DoubleFuture target;
+        private final DoubleUnaryOperator fn;
+
+        private Apply(DoubleFuture source, DoubleFuture target, DoubleUnaryOperator fn) {
+            this.source = source;
+            this.target = target;
+            this.fn = fn;
+        }
+
+        @Override
+        void run() {
+            Throwable ex = source.failure();
+            if (ex != null) {
+                target.failNested(ex);
+                return;
+            }
+            try {
+                target.completeNested(fn.applyAsDouble(source.value()));
+            } catch (Throwable fnEx) {
+                target.failNested(fnEx);
+            }
+        }
+    }
+
+    private static final class ApplyToLong extends Completion {
+
+        private final DoubleFuture source;
+        private final LongFuture target;
+        private final DoubleToLongFunction fn;
+
+        private ApplyToLong(DoubleFuture source, LongFuture target, DoubleToLongFunction fn) {
+            this.source = source;
+            this.target = target;
+            this.fn = fn;
+        }
+
+        @Override
+        void run() {
+            Throwable ex = source.failure();
+            if (ex != null) {
+                target.failNested(ex);
+                return;
+            }
+            try {
+                target.completeNested(fn.applyAsLong(source.value()));
+            } catch (Throwable fnEx) {
+                target.failNested(fnEx);
+            }
+        }
+    }
+
+    private static final class ApplyToObj<R> extends Completion {
+
+        private final DoubleFuture source;
+        private final CompletableFuture<R> target;
+        private final DoubleFunction<? extends R> fn;
+
+        private ApplyToObj(DoubleFuture source, CompletableFuture<R> target, DoubleFunction<? extends R> fn) {
+            this.source = source;
+            this.target = target;
+            this.fn = fn;
+        }
+
+        @Override
+        void run() {
+            Throwable ex = source.failure();
+            if (ex != null) {
+                target.completeExceptionally(ex);
+                return;
+            }
+            try {
+                target.complete(fn.apply(source.value()));
+            } catch (Throwable fnEx) {
+                target.completeExceptionally(fnEx);
+            }
+        }
+    }
+
+    /**
+     * Waits on one future at a time: pushed on the first, and once that is done pushed again on the second. So a
+     * combine is one node rather than one per input.
+     */
+    private static final class Combine extends Completion {
+
+        private final DoubleFuture first;
+        private final DoubleFuture second;
+        private final DoubleFuture target;
+        private final DoubleBinaryOperator fn;
+        private boolean firstDone; // Handed over with the node by the stack push
+
+        private Combine(DoubleFuture first, DoubleFuture second, DoubleFuture target, DoubleBinaryOperator fn) {
+            this.first = first;
+            this.second = second;
+            this.target = target;
+            this.fn = fn;
+        }
+
+        @Override
+        void run() {
+            if (!firstDone) {
+                if (first.failure() != null) {
+                    target.failNested(first.failure()); // No need to wait for the second
+                    return;
+                }
+                firstDone = true;
+                second.push(this);
+                return;
+            }
+
+            Throwable ex = second.failure();
+            if (ex != null) {
+                target.failNested(ex);
+                return;
+            }
+            try {
+                target.completeNested(fn.applyAsDouble(first.value(), second.value()));
+            } catch (Throwable fnEx) {
+                target.failNested(fnEx);
+            }
+        }
+    }
+}
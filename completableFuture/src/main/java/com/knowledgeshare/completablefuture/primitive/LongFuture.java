@@ -0,0 +1,248 @@
+package com.knowledgeshare.completablefuture.primitive;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+import java.util.function.LongToDoubleFunction;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * A future of a plain {@code long}, e.g. for counts and ids. Works like {@link DoubleFuture}: primitive functions on
+ * the hot path, {@link #from(CompletableFuture)} and {@link #toCompletableFuture()} at the edges.
+ */
+public final class LongFuture extends PrimitiveFuture {
+
+    public static LongFuture completed(long value) {
+        LongFuture future = new LongFuture();
+        future.complete(value);
+        return future;
+    }
+
+    public static LongFuture failed(Throwable ex) {
+        LongFuture future = new LongFuture();
+        future.completeExceptionally(ex);
+        return future;
+    }
+
+    /**
+     * Runs {@code supplier} on {@code executor} and completes with what it returns.
+     */
+    public static LongFuture supplyAsync(LongSupplier supplier, Executor executor) {
+        LongFuture future = new LongFuture();
+        executor.execute(() -> {
+            try {
+                future.complete(supplier.getAsLong());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Completes with the value of {@code future}, unboxed. A null value fails with a {@link NullPointerException}.
+     */
+    public static LongFuture from(CompletableFuture<? extends Number> future) {
+        LongFuture converted = new LongFuture();
+        future.whenComplete((value, ex) -> {
+            if (ex != null) {
+                converted.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            } else if (value == null) {
+                converted.completeExceptionally(new NullPointerException("Future completed with null"));
+            } else {
+                converted.complete(value.longValue());
+            }
+        });
+        return converted;
+    }
+
+    public boolean complete(long value) {
+        return completeBits(value);
+    }
+
+    // Completes this future from an action of the future it depends on
+    boolean completeNested(long value) {
+        return completeBitsNested(value);
+    }
+
+    /**
+     * Waits for the value. Throws like {@code CompletableFuture.join()} if the future failed.
+     */
+    public long join() {
+        awaitDone();
+        return reportJoin();
+    }
+
+    /**
+     * The value if the future is done, otherwise {@code valueIfAbsent}. Throws like {@link #join()} if it failed.
+     */
+    public long getNow(long valueIfAbsent) {
+        return isDone() ? reportJoin() : valueIfAbsent;
+    }
+
+    public LongFuture thenApply(LongUnaryOperator fn) {
+        LongFuture target = new LongFuture();
+        push(new Apply(this, target, fn));
+        return target;
+    }
+
+    public DoubleFuture thenApplyToDouble(LongToDoubleFunction fn) {
+        DoubleFuture target = new DoubleFuture();
+        push(new ApplyToDouble(this, target, fn));
+        return target;
+    }
+
+    /**
+     * Leaves the primitive chain: {@code fn} turns the value into an object, e.g. a response.
+     */
+    public <R> CompletableFuture<R> thenApplyToObj(LongFunction<? extends R> fn) {
+        CompletableFuture<R> target = new CompletableFuture<>();
+        push(new ApplyToObj<>(this, target, fn));
+        return target;
+    }
+
+    /**
+     * Completes with {@code fn} applied to both values once both futures are done. Fails as soon as {@code this}
+     * fails, or once {@code other} fails after {@code this} completed.
+     */
+    public LongFuture thenCombine(LongFuture other, LongBinaryOperator fn) {
+        LongFuture target = new LongFuture();
+        push(new Combine(this, other, target, fn));
+        return target;
+    }
+
+    public CompletableFuture<Long> toCompletableFuture() {
+        return thenApplyToObj(Long::valueOf);
+    }
+
+    long value() {
+        return bits();
+    }
+
+    private static final class Apply extends Completion {
+
+        private final LongFuture source;
+        private final LongFuture target;
+        private final LongUnaryOperator fn;
+
+        private Apply(LongFuture source, LongFuture target, LongUnaryOperator fn) {
+            this.source = source;
+            this.target = target;
+            this.fn = fn;
+        }
+
+        @Override
+        void run() {
+            Throwable ex = source.failure();
+            if (ex != null) {
+                target.failNested(ex);
+                return;
+            }
+            try {
+                target.completeNested(fn.applyAsLong(source.value()));
+            } catch (Throwable fnEx) {
+                target.failNested(fnEx);
+            }
+        }
+    }
+
+    private static final class ApplyToDouble extends Completion {
+
+        private final LongFuture source;
+        private final DoubleFuture target;
+        private final LongToDoubleFunction fn;
+
+        private ApplyToDouble(LongFuture source, DoubleFuture target, LongToDoubleFunction fn) {
+            this.source = source;
+            this.target = target;
+            this.fn = fn;
+        }
+
+        @Override
+        void run() {
+            Throwable ex = source.failure();
+            if (ex != null) {
+                target.failNested(ex);
+                return;
+            }
+            try {
+                target.completeNested(fn.applyAsDouble(source.value()));
+            } catch (Throwable fnEx) {
+                target.failNested(fnEx);
+            }
+        }
+    }
+
+    private static final class ApplyToObj<R> extends Completion {
+
+        private final LongFuture source;
+        private final CompletableFuture<R> target;
+        private final LongFunction<? extends R> fn;
+
+        private ApplyToObj(LongFuture source, CompletableFuture<R> target, LongFunction<? extends R> fn) {
+            this.source = source;
+            this.target = target;
+            this.fn = fn;
+        }
+
+        @Override
+        void run() {
+            Throwable ex = source.failure();
+            if (ex != null) {
+                target.completeExceptionally(ex);
+                return;
+            }
+            try {
+                target.complete(fn.apply(source.value()));
+            } catch (Throwable fnEx) {
+                target.completeExceptionally(fnEx);
+            }
+        }
+    }
+
+    /**
+     * Pushed on the first future, and once that is done on the second, like {@code DoubleFuture}'s combine.
+     */
+    private static final class Combine extends Completion {
+
+        private final LongFuture first;
+        private final LongFuture second;
+        private final LongFuture target;
+        private final LongBinaryOperator fn;
+        private boolean firstDone; // Handed over with the node by the stack push
+
+        private Combine(LongFuture first, LongFuture second, LongFuture target, LongBinaryOperator fn) {
+            this.first = first;
+            this.second = second;
+            this.target = target;
+            this.fn = fn;
+        }
+
+        @Override
+        void run() {
+            if (!firstDone) {
+                if (first.failure() != null) {
+                    target.failNested(first.failure()); // No need to wait for the second
+                    return;
+                }
+                firstDone = true;
+                second.push(this);
+                return;
+            }
+
+            Throwable ex = second.failure();
+            if (ex != null) {
+                target.failNested(ex);
+                return;
+            }
+            try {
+                target.completeNested(fn.applyAsLong(first.value(), second.value()));
+            } catch (Throwable fnEx) {
+                target.failNested(fnEx);
+            }
+        }
+    }
+}
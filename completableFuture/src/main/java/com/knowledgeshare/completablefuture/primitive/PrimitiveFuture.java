@@ -0,0 +1,268 @@
+package com.knowledgeshare.completablefuture.primitive;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Completion machinery shared by {@link DoubleFuture} and {@link LongFuture}. The value is kept as the raw bits of a
+ * {@code long}, so neither variant needs a field, or a box, per primitive type.
+ * <p>
+ * Dependent actions are pushed on a lock-free stack and run, in the order they were added, by the thread that completes
+ * the future, or straight away by the thread adding them if it is already done. Like {@code CompletableFuture}'s
+ * postComplete, a dependent completed by an action does not run its own actions nested: they are handed to the loop
+ * already running on that thread, so a chain of any length completes without growing the stack. A future completed
+ * by user code, e.g. from inside a function passed to {@code thenApply}, runs its actions right there in a loop of its
+ * own, so that function can go on to wait for them. Field updaters instead of atomic fields keep a future at one
+ * object.
+ */
+abstract class PrimitiveFuture {
+
+    private static final int PENDING = 0;
+    private static final int COMPLETING = 1;
+    private static final int NORMAL = 2;
+    private static final int EXCEPTIONAL = 3;
+
+    private static final AtomicIntegerFieldUpdater<PrimitiveFuture> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(PrimitiveFuture.class, "state");
+    private static final AtomicReferenceFieldUpdater<PrimitiveFuture, Completion> STACK =
+            AtomicReferenceFieldUpdater.newUpdater(PrimitiveFuture.class, Completion.class, "stack");
+    // Replaces the stack once the future is done, so actions added afterwards run right away
+    private static final Completion FIRED = new Completion() {
+        @Override
+        void run() {
+        }
+    };
+    private static final ThreadLocal<Trampoline> TRAMPOLINE = ThreadLocal.withInitial(Trampoline::new);
+
+    private volatile int state;
+    private volatile Completion stack;
+    private long bits; // written before state becomes NORMAL
+    private Throwable failure; // written before state becomes EXCEPTIONAL
+
+    /**
+     * Fails the future with {@code ex} unless it is already done. Dependents fail with the same exception.
+     */
+    public boolean completeExceptionally(Throwable ex) {
+        return fail(ex, false);
+    }
+
+    /**
+     * Fails the future with a {@link CancellationException} unless it is already done. There is no task to interrupt,
+     * whatever would have completed it finds it done.
+     */
+    public boolean cancel() {
+        return completeExceptionally(new CancellationException());
+    }
+
+    public boolean isDone() {
+        return state >= NORMAL;
+    }
+
+    public boolean isCompletedExceptionally() {
+        return state == EXCEPTIONAL;
+    }
+
+    public boolean isCancelled() {
+        return state == EXCEPTIONAL && failure instanceof CancellationException;
+    }
+
+    final boolean completeBits(long value) {
+        return completeBits(value, false);
+    }
+
+    /**
+     * For actions completing their dependent: the dependent's own actions are left to the loop that runs this action.
+     */
+    final boolean completeBitsNested(long value) {
+        return completeBits(value, true);
+    }
+
+    final boolean failNested(Throwable ex) {
+        return fail(ex, true);
+    }
+
+    private boolean completeBits(long value, boolean nested) {
+        if (!STATE.compareAndSet(this, PENDING, COMPLETING)) {
+            return false;
+        }
+        bits = value;
+        state = NORMAL;
+        fire(nested);
+        return true;
+    }
+
+    private boolean fail(Throwable ex, boolean nested) {
+        if (ex == null) {
+            throw new NullPointerException("ex");
+        }
+        if (!STATE.compareAndSet(this, PENDING, COMPLETING)) {
+            return false;
+        }
+        failure = ex;
+        state = EXCEPTIONAL;
+        fire(nested);
+        return true;
+    }
+
+    /**
+     * The raw value. Only valid once the future completed normally.
+     */
+    final long bits() {
+        return bits;
+    }
+
+    /**
+     * The exception the future failed with, or null if it completed normally. Only valid once it is done.
+     */
+    final Throwable failure() {
+        return state == EXCEPTIONAL ? failure : null;
+    }
+
+    /**
+     * Returns the raw value, or throws like {@code CompletableFuture.join()} if the future failed.
+     */
+    final long reportJoin() {
+        Throwable ex = failure();
+        if (ex == null) {
+            return bits;
+        }
+        if (ex instanceof CancellationException) {
+            throw (CancellationException) ex;
+        }
+        if (ex instanceof CompletionException) {
+            throw (CompletionException) ex;
+        }
+        throw new CompletionException(ex);
+    }
+
+    /**
+     * Blocks until the future is done. Like {@code CompletableFuture.join()} it is not interruptible, an interrupt is
+     * kept for the caller to see afterwards.
+     */
+    final void awaitDone() {
+        if (isDone()) {
+            return;
+        }
+
+        push(new Signaller(Thread.currentThread()));
+        boolean interrupted = false;
+        while (!isDone()) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs {@code completion} once this future is done, right away if it already is.
+     */
+    final void push(Completion completion) {
+        Completion head;
+        do {
+            head = stack;
+            if (head == FIRED) {
+                completion.run();
+                return;
+            }
+            completion.next = head;
+        } while (!STACK.compareAndSet(this, head, completion));
+    }
+
+    private void fire(boolean nested) {
+        Completion head = STACK.getAndSet(this, FIRED);
+        if (head == null) {
+            return;
+        }
+
+        Completion last = head;
+        Completion ordered = null; // The stack holds the last added first
+        while (head != null) {
+            Completion next = head.next;
+            head.next = ordered;
+            ordered = head;
+            head = next;
+        }
+
+        Trampoline trampoline = TRAMPOLINE.get();
+        if (nested && trampoline.running) {
+            // Completed by an action, the loop further up this thread's stack runs them once it returns. Ahead of what
+            // is left, so dependents still run before the siblings of the action that completed this future
+            last.next = trampoline.head;
+            trampoline.head = ordered;
+            return;
+        }
+
+        // Completed by user code, which may wait for these actions as soon as this returns, so they run now. Whatever
+        // an outer loop still has to run is put aside until then
+        Completion outer = trampoline.head;
+        boolean outerRunning = trampoline.running;
+        trampoline.head = ordered;
+        trampoline.running = true;
+        Throwable thrown = null;
+        try {
+            Completion completion;
+            while ((completion = trampoline.head) != null) {
+                trampoline.head = completion.next;
+                completion.next = null; // A completion may push itself on another future from run()
+                try {
+                    completion.run();
+                } catch (RuntimeException | Error ex) {
+                    // None may throw, but if one does the others still run rather than leave their futures pending
+                    if (thrown == null) {
+                        thrown = ex;
+                    } else {
+                        thrown.addSuppressed(ex);
+                    }
+                }
+            }
+        } finally {
+            trampoline.head = outer;
+            trampoline.running = outerRunning;
+        }
+
+        if (thrown instanceof RuntimeException) {
+            throw (RuntimeException) thrown;
+        }
+        if (thrown != null) {
+            throw (Error) thrown;
+        }
+    }
+
+    /**
+     * An action that depends on a future. Must not throw, failures of user code go to the dependent future.
+     */
+    abstract static class Completion {
+
+        Completion next; // Published by the stack CAS
+
+        abstract void run();
+    }
+
+    // The actions a thread still has to run
+    private static final class Trampoline {
+
+        private Completion head;
+        private boolean running;
+    }
+
+    private static final class Signaller extends Completion {
+
+        private final Thread waiter;
+
+        private Signaller(Thread waiter) {
+            this.waiter = waiter;
+        }
+
+        @Override
+        void run() {
+            LockSupport.unpark(waiter);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.knowledgeshare.completablefuture.resilience;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Limits how many calls to one dependency are in flight, and adapts that limit to how the dependency is coping.
+ * <p>
+ * The limit follows AIMD (additive increase, multiplicative decrease): every call that answers within
+ * {@code latencyThreshold} while the limit is actually being used raises it by {@code 1/limit}, so it grows by about
+ * one per round of calls. A slower answer, a timeout or a rejection is taken as a sign of overload and multiplies the
+ * limit by {@code backoffRatio}. Calls over the limit wait in a bounded FIFO queue; once that is full they are
+ * rejected straight away with a {@link BulkheadFullException}, so a traffic spike costs the caller nothing instead of
+ * piling onto a dependency that is already slow. A queued caller that gives up, by cancelling or timing out its
+ * future, leaves the queue right away.
+ * <p>
+ * Cancelling the returned future cancels the call in flight and gives its permit back. A cancelled call says nothing
+ * about the dependency, so it leaves the limit as it is.
+ */
+public class AdaptiveBulkhead {
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final int maxQueueSize;
+
+    private final Queue<Pending<?>> queue = new ArrayDeque<>(); // guarded by this
+    private double limit; // guarded by this
+    private int inFlight; // guarded by this
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public AdaptiveBulkhead(String name, int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold,
+                            double backoffRatio, int maxQueueSize) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Backoff ratio must be between 0 and 1");
+        }
+
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    /**
+     * Starts {@code call} now if there is a free permit, queues it if not, or fails fast if the queue is full.
+     */
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> call) {
+        Pending<T> pending = new Pending<>(call);
+        synchronized (this) {
+            if (inFlight < (int) limit) {
+                inFlight++;
+            } else if (queue.size() < maxQueueSize) {
+                queue.add(pending);
+                // A caller that gives up while queued leaves at once, so it neither takes up room nor shows as queued
+                pending.result.whenComplete((value, ex) -> dequeue(pending));
+                return pending.result;
+            } else {
+                rejected.increment();
+                pending.result.completeExceptionally(new BulkheadFullException(String.format(
+                        "Bulkhead %s is full: %d in flight, %d queued", name, inFlight, queue.size())));
+                return pending.result;
+            }
+        }
+
+        start(pending);
+        return pending.result;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("AdaptiveBulkhead[%s: limit=%d, inFlight=%d, queued=%d, rejected=%d]",
+                name, (int) limit, inFlight, queue.size(), rejected.sum());
+    }
+
+    private <T> void start(Pending<T> pending) {
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = pending.call.get();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        CompletableFuture<T> call = future;
+        pending.result.whenComplete((value, ex) -> {
+            if (pending.result.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        future.whenComplete((value, ex) -> {
+            release(System.nanoTime() - start, ex);
+            if (ex != null) {
+                pending.result.completeExceptionally(ex);
+            } else {
+                pending.result.complete(value);
+            }
+        });
+    }
+
+    private synchronized void dequeue(Pending<?> pending) {
+        queue.remove(pending); // Finds nothing if the call was started
+    }
+
+    private void release(long latencyNanos, Throwable ex) {
+        completed.increment();
+        List<Pending<?>> ready = new ArrayList<>();
+
+        synchronized (this) {
+            if ((ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex) instanceof CancellationException) {
+                // Neither a sign of overload nor of a healthy dependency
+            } else if (isOverload(ex) || latencyNanos > latencyThresholdNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            inFlight--;
+
+            while (inFlight < (int) limit && !queue.isEmpty()) {
+                Pending<?> next = queue.poll();
+                if (!next.result.isDone()) { // Gave up, but its dequeue() has not run yet
+                    inFlight++;
+                    ready.add(next);
+                }
+            }
+        }
+
+        ready.forEach(this::start);
+    }
+
+    private static boolean isOverload(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause instanceof TimeoutException || cause instanceof RejectedExecutionException;
+    }
+
+    private static final class Pending<T> {
+
+        private final Supplier<CompletableFuture<T>> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Pending(Supplier<CompletableFuture<T>> call) {
+            this.call = call;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.knowledgeshare.completablefuture.resilience;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown (as the cause of a failed future) when an {@link AdaptiveBulkhead} has no free permit and no room left in
+ * its queue.
+ */
+public class BulkheadFullException extends RejectedExecutionException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+}
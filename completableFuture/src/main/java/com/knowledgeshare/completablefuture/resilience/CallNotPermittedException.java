@@ -0,0 +1,13 @@
+package com.knowledgeshare.completablefuture.resilience;
+
+/**
+ * Thrown (as the cause of a failed future) when a {@link CircuitBreaker} is open and short-circuits a call.
+ */
+public class CallNotPermittedException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CallNotPermittedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,226 @@
+package com.knowledgeshare.completablefuture.resilience;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Stops calling a dependency that keeps failing.
+ * <p>
+ * While {@link State#CLOSED} every call goes through and its outcome is kept in a window of the last
+ * {@code windowSize} calls. Once at least {@code minimumCalls} are in the window and the failure rate reaches
+ * {@code failureRateThreshold}, the breaker goes {@link State#OPEN}: calls fail immediately with a
+ * {@link CallNotPermittedException} without touching the dependency or a thread, so the caller can fall back at once.
+ * After {@code openDuration} the breaker lets {@code halfOpenCalls} trial calls through ({@link State#HALF_OPEN}). If
+ * they all succeed it closes again, and a single failure opens it for another {@code openDuration}. Trial calls that
+ * have not all answered within another {@code openDuration} count as failed, so a trial call that never completes
+ * cannot keep the breaker half-open for good.
+ * <p>
+ * Each call counts only towards the state it was let through in. A call started while closed that answers after the
+ * breaker opened, or a trial call that answers after the trial was given up, is ignored.
+ * <p>
+ * Only exceptions that {@code recordFailure} accepts count as failures. Others, like an invalid argument from the
+ * caller, say nothing about the health of the dependency and count as successful calls.
+ * <p>
+ * Register a {@link Listener} to observe state transitions.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public interface Listener {
+
+        void onStateTransition(String name, State from, State to);
+    }
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private final Predicate<? super Throwable> recordFailure;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Ring buffer of the most recent outcomes, guarded by this
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED; // guarded by this
+    private long generation; // guarded by this, bumped on every transition
+    private long openedAtNanos; // guarded by this
+    private long halfOpenedAtNanos; // guarded by this
+    private int halfOpenStarted; // guarded by this
+    private int halfOpenSucceeded; // guarded by this
+
+    private final LongAdder notPermitted = new LongAdder();
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                          Duration openDuration, int halfOpenCalls) {
+        this(name, windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenCalls, ex -> true);
+    }
+
+    /**
+     * @param recordFailure which exceptions count as failures of the dependency
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                          Duration openDuration, int halfOpenCalls, Predicate<? super Throwable> recordFailure) {
+        if (minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Minimum calls must be between 1 and the window size");
+        }
+
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.recordFailure = recordFailure;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> call) {
+        long permit = tryAcquirePermission();
+        if (permit < 0) {
+            notPermitted.increment();
+            CompletableFuture<T> shortCircuited = new CompletableFuture<>();
+            shortCircuited.completeExceptionally(new CallNotPermittedException("Circuit breaker " + name + " is open"));
+            return shortCircuited;
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        return future.whenComplete((value, ex) -> record(permit, ex == null
+                || !recordFailure.test(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex)));
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return windowCount == 0 ? 0 : (double) windowFailures / windowCount;
+    }
+
+    /**
+     * Number of calls short-circuited while the breaker was open.
+     */
+    public long getNotPermitted() {
+        return notPermitted.sum();
+    }
+
+    // Returns the generation the call is let through in, or -1 if it is not permitted
+    private long tryAcquirePermission() {
+        Transition transition = null;
+        long permit;
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (state == State.OPEN && now - openedAtNanos >= openDurationNanos) {
+                transition = transitionTo(State.HALF_OPEN);
+            } else if (state == State.HALF_OPEN && halfOpenStarted == halfOpenCalls
+                    && now - halfOpenedAtNanos >= openDurationNanos) {
+                transition = transitionTo(State.OPEN); // The trial calls are taking too long, give up on them
+            }
+
+            if (state == State.CLOSED) {
+                permit = generation;
+            } else if (state == State.HALF_OPEN && halfOpenStarted < halfOpenCalls) {
+                halfOpenStarted++;
+                permit = generation;
+            } else {
+                permit = -1;
+            }
+        }
+
+        publish(transition);
+        return permit;
+    }
+
+    private void record(long permit, boolean success) {
+        Transition transition = null;
+
+        synchronized (this) {
+            if (permit != generation) {
+                // Let through in an earlier state: a call from before the breaker opened, or a trial given up on
+            } else if (state == State.HALF_OPEN) {
+                if (!success) {
+                    transition = transitionTo(State.OPEN);
+                } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                    transition = transitionTo(State.CLOSED);
+                }
+            } else if (state == State.CLOSED) {
+                if (window[windowIndex] && windowCount == window.length) {
+                    windowFailures--;
+                }
+                window[windowIndex] = !success;
+                windowIndex = (windowIndex + 1) % window.length;
+                windowCount = Math.min(windowCount + 1, window.length);
+                if (!success) {
+                    windowFailures++;
+                }
+
+                if (windowCount >= minimumCalls && getFailureRate() >= failureRateThreshold) {
+                    transition = transitionTo(State.OPEN);
+                }
+            }
+        }
+
+        publish(transition);
+    }
+
+    // Must hold the lock
+    private Transition transitionTo(State to) {
+        Transition transition = new Transition(state, to);
+        state = to;
+        generation++;
+        if (to == State.OPEN) {
+            openedAtNanos = System.nanoTime();
+        } else if (to == State.HALF_OPEN) {
+            halfOpenedAtNanos = System.nanoTime();
+            halfOpenStarted = 0;
+            halfOpenSucceeded = 0;
+        } else {
+            windowIndex = 0;
+            windowCount = 0;
+            windowFailures = 0;
+            Arrays.fill(window, false);
+        }
+        return transition;
+    }
+
+    // Listeners are called outside the lock so they can safely call back into the breaker
+    private void publish(Transition transition) {
+        if (transition != null) {
+            listeners.forEach(listener -> listener.onStateTransition(name, transition.from, transition.to));
+        }
+    }
+
+    private static final class Transition {
+
+        private final State from;
+        private final State to;
+
+        private Transition(State from, State to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
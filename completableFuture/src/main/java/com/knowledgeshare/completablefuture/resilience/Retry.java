@@ -0,0 +1,103 @@
+package com.knowledgeshare.completablefuture.resilience;
+
+import com.knowledgeshare.completablefuture.timer.DelayScheduler;
+import com.knowledgeshare.completablefuture.timer.Timeout;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Retries failed async calls with exponential backoff and full jitter.
+ * <p>
+ * The wait before attempt {@code n + 1} is a random duration between zero and
+ * {@code min(maxBackoff, initialBackoff * multiplier^(n - 1))}. The jitter spreads the retries of many callers out
+ * so they do not hit a recovering dependency in lockstep. The wait is a timer entry on the {@link DelayScheduler},
+ * not a sleeping thread, so a call that is backing off costs nothing but memory.
+ */
+public class Retry {
+
+    private final DelayScheduler scheduler;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final double multiplier;
+    private final Predicate<Throwable> retryOn;
+
+    private final LongAdder retries = new LongAdder();
+
+    /**
+     * @param retryOn decides, given the cause of a failure, whether it is worth another attempt. Failures it rejects
+     *                are passed straight to the caller.
+     */
+    public Retry(DelayScheduler scheduler, int maxAttempts, Duration initialBackoff, Duration maxBackoff,
+                 double multiplier, Predicate<Throwable> retryOn) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be at least 1");
+        }
+
+        this.scheduler = scheduler;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.multiplier = multiplier;
+        this.retryOn = retryOn;
+    }
+
+    /**
+     * Calls {@code call} until it succeeds, fails with a non-retryable error or runs out of attempts. Retries are
+     * started from the timer thread, so {@code call} must return its future without blocking. Cancelling the returned
+     * future stops further attempts.
+     */
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(call, result, 1);
+        return result;
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    private <T> void attempt(Supplier<CompletableFuture<T>> call, CompletableFuture<T> result, int attempt) {
+        if (result.isDone()) {
+            return;
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        future.whenComplete((value, ex) -> {
+            if (ex == null) {
+                result.complete(value);
+                return;
+            }
+
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (attempt >= maxAttempts || !retryOn.test(cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            retries.increment();
+            Timeout backoff = scheduler.schedule(() -> attempt(call, result, attempt + 1), DelayScheduler.failOnClose(result),
+                    backoffNanos(attempt), TimeUnit.NANOSECONDS);
+            result.whenComplete((ignored, resultEx) -> backoff.cancel());
+        });
+    }
+
+    private long backoffNanos(int attempt) {
+        double ceiling = Math.min(maxBackoffNanos, initialBackoffNanos * Math.pow(multiplier, attempt - 1));
+        return (long) (ThreadLocalRandom.current().nextDouble() * ceiling);
+    }
+}
@@ -0,0 +1,196 @@
+package com.knowledgeshare.completablefuture.scope;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Owns the futures forked inside it, so work that nobody is waiting for any more is stopped instead of left running.
+ * <p>
+ * The scope shuts down when a child fails, when a future passed to {@link #bind} fails or is cancelled, or when it is
+ * closed. Shutting down cancels every unfinished child, which interrupts the threads running {@link #fork} tasks, and
+ * makes later forks return cancelled futures. {@link #close()} additionally waits until every forked task has left
+ * its thread, so once the try-with-resources block exits nothing started in the scope is still running:
+ *
+ * <pre>
+ * try (TaskScope scope = new TaskScope(executor)) {
+ *     CompletableFuture&lt;Double&gt; weight = scope.forkAsync(() -&gt; getWeightInKg(userId));
+ *     CompletableFuture&lt;Double&gt; height = scope.forkAsync(() -&gt; getHeightInCm(userId));
+ *     return scope.bind(weight.thenCombine(height, this::bmi)).get(); // if weight fails, height is cancelled
+ * }
+ * </pre>
+ * <p>
+ * Cancelling an async child only stops the work that reacts to cancellation, such as timer delays, {@link #fork}
+ * tasks and chains built on them. The executor must run or reject every task it accepts, or {@code close()} waits for
+ * tasks that never start.
+ */
+public class TaskScope implements AutoCloseable {
+
+    private final Executor executor;
+    private final Set<CompletableFuture<?>> children = ConcurrentHashMap.newKeySet();
+    private volatile boolean shutdown;
+
+    private final Object lock = new Object();
+    private int running; // fork tasks that were submitted and have not returned yet, guarded by lock
+
+    public TaskScope(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Runs {@code task} on the scope's executor. Cancelling the returned future, or shutting the scope down,
+     * interrupts the thread running it.
+     */
+    public <T> CompletableFuture<T> fork(Supplier<T> task) {
+        CompletableFuture<T> child = new CompletableFuture<>();
+        if (!register(child)) {
+            return child;
+        }
+
+        FutureTask<Void> futureTask = new FutureTask<>(() -> {
+            try {
+                child.complete(task.get());
+            } catch (Throwable ex) {
+                child.completeExceptionally(ex);
+            }
+        }, null);
+        child.whenComplete((value, ex) -> {
+            if (child.isCancelled()) {
+                futureTask.cancel(true);
+            }
+        });
+
+        synchronized (lock) {
+            running++;
+        }
+        try {
+            // The wrapper returns even when the task was cancelled before it started, so close() is never left waiting
+            executor.execute(() -> {
+                try {
+                    futureTask.run();
+                } finally {
+                    exited();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            exited();
+            child.completeExceptionally(ex);
+        }
+        return child;
+    }
+
+    /**
+     * Adopts the future {@code call} returns as a child. {@code call} is not invoked once the scope is shut down.
+     */
+    public <T> CompletableFuture<T> forkAsync(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> child = new CompletableFuture<>();
+        if (!register(child)) {
+            return child;
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException ex) {
+            child.completeExceptionally(ex);
+            return child;
+        }
+
+        future.whenComplete((value, ex) -> {
+            if (ex != null) {
+                child.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            } else {
+                child.complete(value);
+            }
+        });
+        child.whenComplete((value, ex) -> {
+            if (child.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+        return child;
+    }
+
+    /**
+     * Shuts the scope down when {@code parent} fails or is cancelled, e.g. the result the caller is waiting for, so
+     * giving up on the result also stops the children it was built from.
+     */
+    public <T> CompletableFuture<T> bind(CompletableFuture<T> parent) {
+        parent.whenComplete((value, ex) -> {
+            if (ex != null) {
+                shutdown();
+            }
+        });
+        return parent;
+    }
+
+    /**
+     * Cancels every unfinished child and stops new ones from starting. Does not wait for them.
+     */
+    public void shutdown() {
+        shutdown = true;
+        children.forEach(child -> child.cancel(true));
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Shuts the scope down and waits until every {@link #fork} task has returned. If the calling thread is
+     * interrupted it keeps waiting and restores the interrupt afterwards.
+     */
+    @Override
+    public void close() {
+        shutdown();
+
+        boolean interrupted = false;
+        synchronized (lock) {
+            while (running > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean register(CompletableFuture<?> child) {
+        if (shutdown) {
+            child.cancel(false);
+            return false;
+        }
+
+        children.add(child);
+        child.whenComplete((value, ex) -> {
+            children.remove(child);
+            if (ex != null && !(ex instanceof CancellationException)) {
+                shutdown(); // A failed child makes the siblings' work pointless
+            }
+        });
+
+        if (shutdown) {
+            // Raced with shutdown(), which may have missed this child
+            child.cancel(false);
+            return false;
+        }
+        return true;
+    }
+
+    private void exited() {
+        synchronized (lock) {
+            running--;
+            lock.notifyAll();
+        }
+    }
+}
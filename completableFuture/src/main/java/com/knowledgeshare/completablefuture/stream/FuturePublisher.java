@@ -0,0 +1,203 @@
+package com.knowledgeshare.completablefuture.stream;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Turns a source of keys into a Reactive Streams {@link Publisher} of the results of an async call per key.
+ * <p>
+ * Keys are pulled from the source lazily, and a call is only started when the subscriber has requested a result
+ * that no call in flight will deliver, with at most {@code maxConcurrency} calls in flight. So the futures and results
+ * held at any time are bounded by the demand and the concurrency limit, not by the size of the source, which can be
+ * far larger than fits in memory.
+ * <p>
+ * Results are emitted in completion order. The first failed call fails the stream and cancels the calls still in
+ * flight, as does cancelling the subscription. Every subscriber gets its own iterator over the keys.
+ */
+public class FuturePublisher<K, V> implements Publisher<V> {
+
+    private final Iterable<? extends K> keys;
+    private final Function<? super K, ? extends CompletableFuture<? extends V>> call;
+    private final int maxConcurrency;
+
+    public FuturePublisher(Iterable<? extends K> keys, Function<? super K, ? extends CompletableFuture<? extends V>> call,
+                           int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Max concurrency must be at least 1");
+        }
+
+        this.keys = keys;
+        this.call = call;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super V> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+
+        KeySubscription subscription = new KeySubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.start();
+    }
+
+    /**
+     * All signals to the subscriber and all reads of the key iterator happen in {@link #drain()}, which only one
+     * thread runs at a time. Threads that find it busy leave a note in {@code wip} and the running thread loops again.
+     */
+    private final class KeySubscription implements Subscription {
+
+        private final Subscriber<? super V> subscriber;
+        private final Queue<Object> completed = new ConcurrentLinkedQueue<>();
+        private final Set<CompletableFuture<? extends V>> inFlight = ConcurrentHashMap.newKeySet();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+
+        // Only touched by the thread running drain()
+        private Iterator<? extends K> iterator;
+        private boolean exhausted;
+        private boolean done;
+        private long emitted;
+        private int running;
+
+        private KeySubscription(Subscriber<? super V> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Demand must be positive, got " + n);
+            } else {
+                requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void start() {
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            do {
+                if (!done) {
+                    emit();
+                } else {
+                    completed.clear(); // Calls that finished while being cancelled
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void emit() {
+            try {
+                if (iterator == null) {
+                    iterator = keys.iterator();
+                }
+
+                while (true) {
+                    if (cancelled) {
+                        terminate();
+                        return;
+                    }
+                    if (invalidRequest != null) {
+                        terminate();
+                        subscriber.onError(invalidRequest);
+                        return;
+                    }
+
+                    Object result = completed.poll();
+                    if (result != null) {
+                        running--;
+                        if (result instanceof Failure) {
+                            terminate();
+                            subscriber.onError(((Failure) result).cause);
+                            return;
+                        }
+                        emitted++;
+                        subscriber.onNext((V) result);
+                        continue;
+                    }
+
+                    // Checked regardless of demand, so the stream completes without an extra request once it is used up
+                    if (!exhausted && !iterator.hasNext()) {
+                        exhausted = true;
+                    }
+                    if (!exhausted && running < maxConcurrency && emitted + running < requested.get()) {
+                        startCall(iterator.next());
+                        continue;
+                    }
+
+                    if (exhausted && running == 0) {
+                        done = true;
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+            } catch (Throwable ex) {
+                // Thrown by the key source or by the call itself
+                terminate();
+                subscriber.onError(ex);
+            }
+        }
+
+        private void startCall(K key) {
+            CompletableFuture<? extends V> future = call.apply(key);
+            running++;
+            inFlight.add(future);
+            future.whenComplete((value, ex) -> {
+                inFlight.remove(future);
+                if (ex != null) {
+                    completed.offer(new Failure(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex));
+                } else if (value == null) {
+                    completed.offer(new Failure(new NullPointerException("Call for key " + key + " returned null")));
+                } else {
+                    completed.offer(value);
+                }
+                drain();
+            });
+        }
+
+        private void terminate() {
+            done = true;
+            completed.clear();
+            inFlight.forEach(future -> future.cancel(true));
+            inFlight.clear();
+        }
+    }
+
+    private static final class Failure {
+
+        private final Throwable cause;
+
+        private Failure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.knowledgeshare.completablefuture.timeout;
+
+import java.time.Duration;
+
+/**
+ * A point in time by which a whole request has to finish.
+ * <p>
+ * Unlike a per-call timeout, a deadline is shared by every step of a chain: each step gets whatever budget the
+ * previous steps left over, so {@code a.thenCompose(b)} can never take longer than the deadline in total.
+ */
+public final class Deadline {
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, remainingNanos()));
+    }
+
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline[remaining=" + remaining() + "]";
+    }
+}
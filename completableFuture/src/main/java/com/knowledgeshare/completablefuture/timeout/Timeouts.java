@@ -0,0 +1,91 @@
+package com.knowledgeshare.completablefuture.timeout;
+
+import com.knowledgeshare.completablefuture.timer.DelayScheduler;
+import com.knowledgeshare.completablefuture.timer.Timeout;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Java 8 replacements for {@code orTimeout}/{@code completeOnTimeout} (added in Java 9), plus deadline propagation
+ * through {@code thenCompose} chains.
+ * <p>
+ * Timeouts are scheduled on the shared {@link DelayScheduler}, so bounding a call costs a timer entry rather than a
+ * thread, and the entry is cancelled as soon as the future completes on its own.
+ */
+public class Timeouts {
+
+    private final DelayScheduler scheduler;
+
+    public Timeouts(DelayScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Completes {@code future} exceptionally with a {@link TimeoutException} if it is not done within {@code timeout}.
+     *
+     * @return the same future, for chaining
+     */
+    public <T> CompletableFuture<T> orTimeout(CompletableFuture<T> future, Duration timeout) {
+        return orTimeout(future, timeout.toNanos());
+    }
+
+    public <T> CompletableFuture<T> orTimeout(CompletableFuture<T> future, Deadline deadline) {
+        return orTimeout(future, deadline.remainingNanos());
+    }
+
+    /**
+     * Completes {@code future} with {@code value} if it is not done within {@code timeout}.
+     *
+     * @return the same future, for chaining
+     */
+    public <T> CompletableFuture<T> completeOnTimeout(CompletableFuture<T> future, T value, Duration timeout) {
+        if (!future.isDone()) {
+            Timeout timer = scheduler.schedule(() -> future.complete(value), DelayScheduler.failOnClose(future),
+                    timeout.toNanos(), TimeUnit.NANOSECONDS);
+            future.whenComplete((result, ex) -> timer.cancel());
+        }
+        return future;
+    }
+
+    /**
+     * Wraps a {@code thenCompose} step so it only gets the budget that is left on {@code deadline}. If the deadline has
+     * already passed when the previous stage completes, {@code next} is not called at all.
+     * <p>
+     * {@code getUserId(name).thenCompose(timeouts.within(deadline, this::getUserCreditRating))}
+     */
+    public <T, U> Function<T, CompletableFuture<U>> within(Deadline deadline,
+                                                           Function<? super T, ? extends CompletableFuture<U>> next) {
+        return value -> {
+            if (deadline.isExpired()) {
+                CompletableFuture<U> expired = new CompletableFuture<>();
+                expired.completeExceptionally(new TimeoutException("Deadline passed before the next stage started"));
+                return expired;
+            }
+
+            return orTimeout(next.apply(value), deadline);
+        };
+    }
+
+    private <T> CompletableFuture<T> orTimeout(CompletableFuture<T> future, long timeoutNanos) {
+        if (future.isDone()) {
+            return future;
+        }
+        if (timeoutNanos <= 0) {
+            future.completeExceptionally(timeoutException(0));
+            return future;
+        }
+
+        Timeout timer = scheduler.schedule(() -> future.completeExceptionally(timeoutException(timeoutNanos)),
+                DelayScheduler.failOnClose(future), timeoutNanos, TimeUnit.NANOSECONDS);
+        future.whenComplete((result, ex) -> timer.cancel());
+        return future;
+    }
+
+    private static TimeoutException timeoutException(long timeoutNanos) {
+        return new TimeoutException("Not completed within " + Duration.ofNanos(timeoutNanos));
+    }
+}
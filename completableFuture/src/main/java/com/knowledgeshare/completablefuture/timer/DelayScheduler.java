@@ -0,0 +1,115 @@
+package com.knowledgeshare.completablefuture.timer;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs tasks after a delay without parking a thread per task.
+ * <p>
+ * Scheduled tasks run on the scheduler's own thread, so they must be short. Use
+ * {@link #delayed(Object, Duration, Executor)} when the code waiting on the result should run elsewhere.
+ */
+public interface DelayScheduler extends AutoCloseable {
+
+    /**
+     * Runs {@code task} once {@code delay} has passed. If the scheduler is closed first, {@code onClose} runs instead,
+     * so whatever waits on the task can be failed rather than left waiting forever.
+     */
+    Timeout schedule(Runnable task, Runnable onClose, long delay, TimeUnit unit);
+
+    /**
+     * Same as {@link #schedule(Runnable, Runnable, long, TimeUnit)} for tasks nobody waits on.
+     */
+    default Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return schedule(task, () -> {
+        }, delay, unit);
+    }
+
+    /**
+     * Returns a future that completes with {@code value} once {@code delay} has passed. Dependent stages that are not
+     * *Async run on the scheduler thread.
+     */
+    default <T> CompletableFuture<T> delayed(T value, Duration delay) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Timeout timeout = schedule(() -> future.complete(value), failOnClose(future), delay.toNanos(), TimeUnit.NANOSECONDS);
+        cancelOnCancellation(future, timeout);
+        return future;
+    }
+
+    /**
+     * Same as {@link #delayed(Object, Duration)}, but completes the future on {@code executor} so dependent stages never
+     * run on the scheduler thread.
+     */
+    default <T> CompletableFuture<T> delayed(T value, Duration delay, Executor executor) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Timeout timeout = schedule(() -> {
+            try {
+                executor.execute(() -> future.complete(value));
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+        }, failOnClose(future), delay.toNanos(), TimeUnit.NANOSECONDS);
+        cancelOnCancellation(future, timeout);
+        return future;
+    }
+
+    /**
+     * Runs {@code supplier} on {@code executor} once {@code delay} has passed. Cancelling the returned future before
+     * then removes the task from the scheduler, so {@code supplier} never runs.
+     */
+    default <T> CompletableFuture<T> supplyDelayed(Supplier<T> supplier, Duration delay, Executor executor) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Timeout timeout = schedule(() -> {
+            try {
+                executor.execute(() -> {
+                    if (future.isDone()) {
+                        return;
+                    }
+
+                    try {
+                        future.complete(supplier.get());
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+        }, failOnClose(future), delay.toNanos(), TimeUnit.NANOSECONDS);
+        cancelOnCancellation(future, timeout);
+        return future;
+    }
+
+    /**
+     * Stops the scheduler. Tasks that have not run yet never run, their {@code onClose} action runs instead.
+     */
+    @Override
+    void close();
+
+    /**
+     * An {@code onClose} action that fails {@code future} with {@link #closedException()}.
+     */
+    static Runnable failOnClose(CompletableFuture<?> future) {
+        return () -> future.completeExceptionally(closedException());
+    }
+
+    /**
+     * What a task that never ran because its scheduler was closed fails with.
+     */
+    static RejectedExecutionException closedException() {
+        return new RejectedExecutionException("Scheduler was closed before the task ran");
+    }
+
+    static void cancelOnCancellation(CompletableFuture<?> future, Timeout timeout) {
+        future.whenComplete((result, ex) -> {
+            if (ex instanceof CancellationException) {
+                timeout.cancel();
+            }
+        });
+    }
+}
@@ -0,0 +1,293 @@
+package com.knowledgeshare.completablefuture.timer;
+
+import com.knowledgeshare.completablefuture.executor.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link DelayScheduler} backed by a single thread and a hashed timing wheel.
+ * <p>
+ * Scheduling is O(1): a task is dropped into a lock-free queue and the worker thread moves it into the wheel bucket
+ * for its deadline. Every tick the worker runs the tasks in the current bucket whose remaining rounds reached zero.
+ * Deadlines are therefore accurate to one tick, which is plenty for simulated latencies and timeouts, and any number
+ * of pending delays costs one thread.
+ * <p>
+ * Closing the timer stops the worker and runs the {@code onClose} action of every task that has not run yet, so the
+ * futures waiting on them fail instead of hanging.
+ */
+public class HashedWheelTimer implements DelayScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(HashedWheelTimer.class);
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<WheelTimeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean running = true;
+    private long tick;
+
+    public HashedWheelTimer() {
+        this(10, TimeUnit.MILLISECONDS, 512);
+    }
+
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be greater than 0");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("Ticks per wheel must be between 1 and 2^30");
+        }
+
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new Bucket[powerOfTwo(ticksPerWheel)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+        this.startNanos = System.nanoTime();
+        this.worker = new NamedThreadFactory("wheel-timer").newThread(this::run);
+        this.worker.start();
+    }
+
+    @Override
+    public Timeout schedule(Runnable task, Runnable onClose, long delay, TimeUnit unit) {
+        if (!running) {
+            throw new IllegalStateException("Timer has been closed");
+        }
+
+        WheelTimeout timeout = new WheelTimeout(task, onClose, System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay)));
+        pendingCount.incrementAndGet();
+        pending.add(timeout);
+        if (!running) {
+            timeout.close(); // Raced with close(), which may have drained the queue already
+        }
+        return timeout;
+    }
+
+    /**
+     * Number of tasks that have been scheduled but have neither run nor been cancelled.
+     */
+    public int pendingTimeouts() {
+        return pendingCount.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+        if (Thread.currentThread() == worker) {
+            return; // Closed by a task, the worker closes what is left once the task returns
+        }
+
+        boolean interrupted = false;
+        while (worker.isAlive()) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running && waitForNextTick()) {
+            transferPending();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+        closePending();
+    }
+
+    // Only run by the worker once it has stopped ticking, so it is the last to touch the wheel
+    private void closePending() {
+        for (Bucket bucket : wheel) {
+            bucket.close();
+        }
+        WheelTimeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            timeout.close();
+        }
+    }
+
+    private boolean waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long sleepNanos = deadline - (System.nanoTime() - startNanos);
+            if (sleepNanos <= 0) {
+                return true;
+            }
+
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            WheelTimeout timeout = pending.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            // Deadlines that already passed go into the current bucket so they run on this tick
+            wheel[(int) (Math.max(calculated, tick) & mask)].add(timeout);
+        }
+    }
+
+    private static int powerOfTwo(int ticksPerWheel) {
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private final class WheelTimeout implements Timeout {
+
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final Runnable onClose;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(INIT);
+
+        // Only touched by the worker thread
+        private long remainingRounds;
+        private WheelTimeout next;
+        private WheelTimeout prev;
+
+        private WheelTimeout(Runnable task, Runnable onClose, long deadline) {
+            this.task = task;
+            this.onClose = onClose;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (state.compareAndSet(INIT, CANCELLED)) {
+                // The worker unlinks cancelled timeouts lazily when it next visits their bucket
+                pendingCount.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(INIT, EXPIRED)) {
+                return;
+            }
+
+            pendingCount.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                // A failing task must never kill the worker thread and with it every other pending timeout
+                log.error("Timer task failed", t);
+            }
+        }
+
+        private void close() {
+            if (!state.compareAndSet(INIT, CANCELLED)) {
+                return;
+            }
+
+            pendingCount.decrementAndGet();
+            try {
+                onClose.run();
+            } catch (Throwable t) {
+                log.error("Timer close action failed", t);
+            }
+        }
+    }
+
+    private static final class Bucket {
+
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        private void add(WheelTimeout timeout) {
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void expire() {
+            WheelTimeout timeout = head;
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void close() {
+            WheelTimeout timeout = head;
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                remove(timeout);
+                timeout.close();
+                timeout = next;
+            }
+        }
+
+        private void remove(WheelTimeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.next = null;
+            timeout.prev = null;
+        }
+    }
+}
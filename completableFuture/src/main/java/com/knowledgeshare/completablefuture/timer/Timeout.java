@@ -0,0 +1,18 @@
+package com.knowledgeshare.completablefuture.timer;
+
+/**
+ * Handle to a task scheduled on a {@link DelayScheduler}.
+ */
+public interface Timeout {
+
+    /**
+     * Cancels the task if it has not run yet.
+     *
+     * @return {@code true} if this call prevented the task from running
+     */
+    boolean cancel();
+
+    boolean isCancelled();
+
+    boolean isExpired();
+}
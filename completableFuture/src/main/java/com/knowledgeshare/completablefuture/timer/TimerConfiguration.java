@@ -0,0 +1,17 @@
+package com.knowledgeshare.completablefuture.timer;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@EnableConfigurationProperties(TimerProperties.class)
+public class TimerConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public DelayScheduler delayScheduler(TimerProperties properties) {
+        return new HashedWheelTimer(properties.getTickDuration().toNanos(), TimeUnit.NANOSECONDS, properties.getTicksPerWheel());
+    }
+}
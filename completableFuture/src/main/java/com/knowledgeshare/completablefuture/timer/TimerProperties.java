@@ -0,0 +1,38 @@
+package com.knowledgeshare.completablefuture.timer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Resolution of the shared timer, bound from {@code examples.timer.*} in application.properties.
+ */
+@ConfigurationProperties(prefix = "examples.timer")
+public class TimerProperties {
+
+    /**
+     * How often the timer checks for due tasks. Delays are accurate to one tick.
+     */
+    private Duration tickDuration = Duration.ofMillis(10);
+
+    /**
+     * Number of buckets in the wheel. Rounded up to a power of two.
+     */
+    private int ticksPerWheel = 512;
+
+    public Duration getTickDuration() {
+        return tickDuration;
+    }
+
+    public void setTickDuration(Duration tickDuration) {
+        this.tickDuration = tickDuration;
+    }
+
+    public int getTicksPerWheel() {
+        return ticksPerWheel;
+    }
+
+    public void setTicksPerWheel(int ticksPerWheel) {
+        this.ticksPerWheel = ticksPerWheel;
+    }
+}
@@ -0,0 +1,102 @@
+package com.knowledgeshare.completablefuture.web;
+
+import com.knowledgeshare.completablefuture.examples.Examples;
+import com.knowledgeshare.completablefuture.resilience.CallNotPermittedException;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Exposes the {@link Examples} flows over HTTP without holding a servlet thread while they run.
+ * <p>
+ * Each handler only starts the flow and returns a {@link DeferredResult}, so the servlet thread goes back to the
+ * container straight away and the response is written by whichever thread completes the future. The number of
+ * requests in flight is bounded by the executors and the timer, not by the servlet thread pool. Every endpoint has its
+ * own timeout from {@link WebProperties}. When it runs out the request is answered with 504 and the future is
+ * cancelled, which stops the flows that react to cancellation, such as the scope behind {@code /bmi}.
+ */
+@RestController
+@EnableConfigurationProperties(WebProperties.class)
+public class ExamplesController {
+
+    private final Examples examples;
+    private final WebProperties properties;
+
+    public ExamplesController(Examples examples, WebProperties properties) {
+        this.examples = examples;
+        this.properties = properties;
+    }
+
+    @GetMapping("/credit-ratings/{userName}")
+    public DeferredResult<Double> creditRating(@PathVariable String userName) {
+        return deferred(() -> examples.creditRating(userName), properties.getCreditRatingTimeout());
+    }
+
+    @GetMapping("/bmi/{userId}")
+    public DeferredResult<Double> bmi(@PathVariable Long userId) {
+        return deferred(() -> examples.bmi(userId), properties.getBmiTimeout());
+    }
+
+    @GetMapping("/greeting")
+    public DeferredResult<String> greeting() {
+        return deferred(examples::greeting, properties.getGreetingTimeout());
+    }
+
+    @GetMapping("/addresses/{userId}")
+    public DeferredResult<String> address(@PathVariable Long userId) {
+        return deferred(() -> examples.userAddress(userId), properties.getAddressTimeout());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler({CallNotPermittedException.class, RejectedExecutionException.class}) // Includes BulkheadFullException
+    public ResponseEntity<String> unavailable(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(TimeoutException.class)
+    public ResponseEntity<String> timedOut(TimeoutException ex) {
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(ex.getMessage());
+    }
+
+    private static <T> DeferredResult<T> deferred(Supplier<CompletableFuture<T>> flow, Duration timeout) {
+        DeferredResult<T> result = new DeferredResult<>(timeout.toMillis());
+
+        CompletableFuture<T> future;
+        try {
+            future = flow.get();
+        } catch (RuntimeException ex) {
+            // E.g. a pool that rejected the first task, answered like a failed future
+            result.setErrorResult(ex);
+            return result;
+        }
+
+        result.onTimeout(() -> {
+            result.setErrorResult(new TimeoutException("Not completed within " + timeout));
+            future.cancel(true); // Nobody is waiting for it any more
+        });
+        future.whenComplete((value, ex) -> {
+            if (ex != null) {
+                result.setErrorResult(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            } else {
+                result.setResult(value);
+            }
+        });
+        return result;
+    }
+}
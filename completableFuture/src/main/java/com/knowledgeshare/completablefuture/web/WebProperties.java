@@ -0,0 +1,66 @@
+package com.knowledgeshare.completablefuture.web;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * How long each endpoint waits for its result, bound from {@code examples.web.*} in application.properties.
+ * <p>
+ * The request is answered with 504 once its timeout runs out, whether or not the work behind it is still running.
+ */
+@ConfigurationProperties(prefix = "examples.web")
+public class WebProperties {
+
+    /**
+     * Two remote calls one after the other: the user id, then the credit rating.
+     */
+    private Duration creditRatingTimeout = Duration.ofSeconds(15);
+
+    /**
+     * Weight and height are looked up at the same time.
+     */
+    private Duration bmiTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Three calls at the same time, the slowest takes 5 seconds.
+     */
+    private Duration greetingTimeout = Duration.ofSeconds(10);
+
+    /**
+     * A local lookup with retries, which falls back to "Not available" when it fails.
+     */
+    private Duration addressTimeout = Duration.ofSeconds(5);
+
+    public Duration getCreditRatingTimeout() {
+        return creditRatingTimeout;
+    }
+
+    public void setCreditRatingTimeout(Duration creditRatingTimeout) {
+        this.creditRatingTimeout = creditRatingTimeout;
+    }
+
+    public Duration getBmiTimeout() {
+        return bmiTimeout;
+    }
+
+    public void setBmiTimeout(Duration bmiTimeout) {
+        this.bmiTimeout = bmiTimeout;
+    }
+
+    public Duration getGreetingTimeout() {
+        return greetingTimeout;
+    }
+
+    public void setGreetingTimeout(Duration greetingTimeout) {
+        this.greetingTimeout = greetingTimeout;
+    }
+
+    public Duration getAddressTimeout() {
+        return addressTimeout;
+    }
+
+    public void setAddressTimeout(Duration addressTimeout) {
+        this.addressTimeout = addressTimeout;
+    }
+}
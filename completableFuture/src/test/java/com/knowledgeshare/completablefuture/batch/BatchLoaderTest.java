@@ -0,0 +1,147 @@
+package com.knowledgeshare.completablefuture.batch;
+
+import com.knowledgeshare.completablefuture.timer.HashedWheelTimer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchLoaderTest {
+
+    private HashedWheelTimer timer;
+    private List<List<Integer>> bulkCalls;
+
+    @BeforeEach
+    void setUp() {
+        timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 64);
+        bulkCalls = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.close();
+    }
+
+    @Test
+    @DisplayName("Keys that arrive within the window are loaded with one bulk call")
+    void collectsKeysWithinWindow() {
+        BatchLoader<Integer, String> cut = new BatchLoader<>(recordingLoader(), timer, Duration.ofMillis(50), 100);
+
+        List<CompletableFuture<String>> futures = IntStream.range(0, 10).mapToObj(cut::load).collect(Collectors.toList());
+
+        assertEquals("value-3", futures.get(3).join());
+        assertEquals(1, bulkCalls.size());
+        assertEquals(10, bulkCalls.get(0).size());
+        assertEquals(10.0, cut.stats().getAverageBatchSize());
+        assertTrue(cut.stats().getAverageWait().toMillis() >= 40);
+    }
+
+    @Test
+    @DisplayName("A full batch is dispatched without waiting for the window")
+    void dispatchesFullBatchImmediately() {
+        BatchLoader<Integer, String> cut = new BatchLoader<>(recordingLoader(), timer, Duration.ofSeconds(30), 4);
+
+        List<CompletableFuture<String>> futures = IntStream.range(0, 10).mapToObj(cut::load).collect(Collectors.toList());
+        cut.flush();
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        assertEquals(3, bulkCalls.size()); // 4 + 4 + the 2 left over on flush
+        assertEquals(4, cut.stats().getMaxBatchSize());
+    }
+
+    @Test
+    @DisplayName("Callers asking for the same key share one lookup but not one future")
+    void deduplicatesKeys() {
+        BatchLoader<Integer, String> cut = new BatchLoader<>(recordingLoader(), timer, Duration.ofMillis(20), 100);
+
+        CompletableFuture<String> first = cut.load(7);
+        CompletableFuture<String> second = cut.load(7);
+        CompletableFuture<String> third = cut.load(7);
+
+        assertNotSame(first, second);
+        first.cancel(true); // Only cancels this caller's copy
+        second.obtrudeValue("overwritten");
+
+        assertEquals("value-7", third.join());
+        assertTrue(first.isCancelled());
+        assertEquals(1, bulkCalls.get(0).size());
+        assertEquals(3, cut.stats().getRequests());
+        assertEquals(1, cut.stats().getKeys());
+    }
+
+    @Test
+    @DisplayName("Missing keys complete with null and a failed bulk call fails every caller in the batch")
+    void missingAndFailedKeys() {
+        BatchLoader<Integer, String> partial = new BatchLoader<>(
+                keys -> CompletableFuture.completedFuture(keys.stream().filter(key -> key % 2 == 0)
+                        .collect(Collectors.toMap(Function.identity(), key -> "value-" + key))),
+                timer, Duration.ofMillis(10), 100);
+        assertNull(partial.load(1).join());
+
+        BatchLoader<Integer, String> failing = new BatchLoader<>(keys -> {
+            throw new IllegalStateException("Bulk endpoint unavailable");
+        }, timer, Duration.ofMillis(10), 100);
+        CompletableFuture<String> first = failing.load(1);
+        CompletableFuture<String> second = failing.load(2);
+
+        assertThrows(CompletionException.class, first::join);
+        assertThrows(CompletionException.class, second::join);
+    }
+
+    @Test
+    @DisplayName("A bulk loader that returns null, or a map that throws on lookup, fails the batch instead of hanging it")
+    void nullOrBrokenBulkResult() {
+        BatchLoader<Integer, String> nullMap = new BatchLoader<>(keys -> CompletableFuture.completedFuture(null),
+                timer, Duration.ofMillis(10), 100);
+        CompletableFuture<String> first = nullMap.load(1);
+        CompletableFuture<String> second = nullMap.load(2);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof NullPointerException);
+        assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+
+        BatchLoader<Integer, String> nullFuture = new BatchLoader<>(keys -> null, timer, Duration.ofMillis(10), 100);
+        assertThrows(ExecutionException.class, () -> nullFuture.load(1).get(5, TimeUnit.SECONDS));
+
+        Map<Integer, String> rejecting = new HashMap<Integer, String>() {
+            @Override
+            public String get(Object key) {
+                throw new IllegalStateException("Unreadable result");
+            }
+        };
+        BatchLoader<Integer, String> broken = new BatchLoader<>(keys -> CompletableFuture.completedFuture(rejecting),
+                timer, Duration.ofMillis(10), 100);
+        CompletableFuture<String> third = broken.load(1);
+        CompletableFuture<String> fourth = broken.load(2);
+
+        assertThrows(ExecutionException.class, () -> third.get(5, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> fourth.get(5, TimeUnit.SECONDS));
+    }
+
+    private Function<List<Integer>, CompletableFuture<Map<Integer, String>>> recordingLoader() {
+        return keys -> {
+            bulkCalls.add(keys);
+            return CompletableFuture.supplyAsync(() -> keys.stream()
+                    .collect(Collectors.toMap(Function.identity(), key -> "value-" + key)));
+        };
+    }
+}
@@ -0,0 +1,144 @@
+package com.knowledgeshare.completablefuture.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BulkLookupTest {
+
+    private ExecutorService executor;
+    private ExecutorService remote;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        remote = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        remote.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Results are in the order of the ids, not the order the lookups completed in")
+    void keepsInputOrder() throws Exception {
+        BulkLookup<Integer, String> cut = new BulkLookup<>(
+                id -> CompletableFuture.supplyAsync(() -> sleep(100 - id, "value " + id), remote),
+                (id, ex) -> "failed", executor, 2, 4);
+
+        List<String> values = cut.lookupAll(ids(100)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(IntStream.range(0, 100).mapToObj(id -> "value " + id).collect(Collectors.toList()), values);
+    }
+
+    @Test
+    @DisplayName("A failed lookup only affects its own id, the fallback turns it into a value")
+    void isolatesFailures() throws Exception {
+        BulkLookup<Long, String> cut = new BulkLookup<>(id -> CompletableFuture.supplyAsync(() -> {
+            if (id < 1) {
+                throw new IllegalArgumentException("User id cannot be less than 1");
+            }
+            return "address " + id;
+        }, remote), (id, ex) -> "Not available: " + ex.getMessage(), executor, 2, 4);
+
+        List<String> values = cut.lookupAll(Arrays.asList(1L, 0L, 2L)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("address 1", "Not available: User id cannot be less than 1", "address 2"), values);
+        assertEquals(1, cut.getFailures());
+    }
+
+    @Test
+    @DisplayName("Each chunk keeps at most maxConcurrencyPerChunk lookups in flight")
+    void boundsConcurrency() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        BulkLookup<Integer, Integer> cut = new BulkLookup<>(id -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> sleep(2, id), remote).whenComplete((value, ex) -> inFlight.decrementAndGet());
+        }, (id, ex) -> -1, executor, 1, 2);
+
+        List<Integer> values = cut.lookupAll(ids(200)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(ids(200), values);
+        assertEquals(4, cut.getChunks()); // One thread, four chunks per thread
+        assertTrue(maxInFlight.get() <= 4 * 2, "Max in flight was " + maxInFlight.get());
+    }
+
+    @Test
+    @DisplayName("A million lookups that complete inline run as a handful of tasks without deep recursion")
+    void runsInlineLookupsInFewTasks() throws Exception {
+        AtomicInteger tasks = new AtomicInteger();
+        BulkLookup<Integer, Integer> cut = new BulkLookup<>(id -> CompletableFuture.completedFuture(id * 2),
+                (id, ex) -> -1, task -> {
+            tasks.incrementAndGet();
+            executor.execute(task);
+        }, 2, 16);
+
+        List<Integer> values = cut.lookupAll(ids(1_000_000)).get(30, TimeUnit.SECONDS);
+
+        assertEquals(1_000_000, values.size());
+        assertEquals(2 * 999_999, values.get(999_999).intValue());
+        assertEquals(8, tasks.get());
+        assertEquals(1_000_000, cut.getLookups());
+    }
+
+    @Test
+    @DisplayName("Ids of a chunk the executor rejects get the fallback, the other chunks still run")
+    void fallsBackWhenRejected() throws Exception {
+        AtomicInteger submitted = new AtomicInteger();
+        BulkLookup<Integer, String> cut = new BulkLookup<>(id -> CompletableFuture.completedFuture("value " + id),
+                (id, ex) -> ex instanceof RejectedExecutionException ? "rejected" : "failed", task -> {
+            if (submitted.incrementAndGet() > 1) {
+                throw new RejectedExecutionException("Pool is full");
+            }
+            executor.execute(task);
+        }, 1, 1);
+
+        List<String> values = cut.lookupAll(ids(8)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("value 0", "value 1", "rejected", "rejected", "rejected", "rejected", "rejected", "rejected"), values);
+    }
+
+    @Test
+    @DisplayName("Works with lists without random access and with no ids at all")
+    void acceptsAnyList() throws Exception {
+        BulkLookup<Integer, Integer> cut = new BulkLookup<>(id -> CompletableFuture.completedFuture(id),
+                (id, ex) -> -1, executor, 2, 2);
+
+        assertEquals(ids(10), cut.lookupAll(new LinkedList<>(ids(10))).get(5, TimeUnit.SECONDS));
+        assertEquals(Collections.emptyList(), cut.lookupAll(new ArrayList<>()).get());
+    }
+
+    private static List<Integer> ids(int count) {
+        return IntStream.range(0, count).boxed().collect(Collectors.toList());
+    }
+
+    private static <T> T sleep(long millis, T value) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+}
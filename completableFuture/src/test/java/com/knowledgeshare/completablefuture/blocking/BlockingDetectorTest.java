@@ -0,0 +1,117 @@
+package com.knowledgeshare.completablefuture.blocking;
+
+import com.knowledgeshare.completablefuture.executor.ExecutorConfiguration;
+import com.knowledgeshare.completablefuture.executor.ExecutorProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BlockingDetectorTest {
+
+    private final List<BlockingReport> reports = new CopyOnWriteArrayList<>();
+    private BlockingDetector detector;
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setUp() {
+        detector = new BlockingDetector(Duration.ofMillis(20), reports::add);
+        pool = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+        detector.close();
+    }
+
+    @Test
+    @DisplayName("A task that sleeps is reported with its executor, stage and stack trace")
+    void reportsSleep() {
+        Executor executor = detector.monitor("io", pool);
+
+        CompletableFuture.runAsync(() -> BlockingDetector.inStage("chain/remoteCall", () -> {
+            sleep(200);
+            return null;
+        }), executor).join();
+
+        assertEquals(1, reports.size());
+        BlockingReport report = reports.get(0);
+        assertEquals("io", report.getExecutor());
+        assertEquals("chain/remoteCall", report.getStage());
+        assertEquals(Thread.State.TIMED_WAITING, report.getState());
+        assertTrue(Arrays.stream(report.getStackTrace()).anyMatch(frame -> frame.getMethodName().equals("sleep")));
+    }
+
+    @Test
+    @DisplayName("A task that waits on another future is reported")
+    void reportsGet() {
+        ThreadPoolExecutor cpu = ExecutorConfiguration.newThreadPool("cpu", new ExecutorProperties.Pool(1, 1, 10), detector);
+        CompletableFuture<String> slow = new CompletableFuture<>();
+
+        CompletableFuture<String> waiting = CompletableFuture.supplyAsync(slow::join, cpu);
+        sleep(200);
+        slow.complete("done");
+
+        assertEquals("done", waiting.join());
+        assertEquals(1, detector.getReported());
+        assertEquals("cpu", reports.get(0).getExecutor());
+        assertEquals(Thread.State.WAITING, reports.get(0).getState());
+        cpu.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Blocking through ManagedBlocking and tasks that never block are not reported")
+    void ignoresManagedBlockingAndBusyTasks() {
+        Executor executor = detector.monitor("io", pool);
+
+        CompletableFuture.runAsync(() -> {
+            try {
+                ManagedBlocking.sleep(Duration.ofMillis(200));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, executor).join();
+        CompletableFuture.runAsync(() -> {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            while (System.nanoTime() < end) {
+                Thread.yield(); // Busy, but never blocked
+            }
+        }, executor).join();
+
+        assertTrue(reports.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Threads that are idle between tasks are not reported")
+    void ignoresIdleThreads() {
+        Executor executor = detector.monitor("io", pool);
+        CompletableFuture.runAsync(() -> { }, executor).join();
+
+        sleep(200); // the pool thread now waits for work
+
+        assertTrue(reports.isEmpty());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.knowledgeshare.completablefuture.blocking;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ManagedBlockingTest {
+
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("A worker waiting on work queued behind it in the same pool does not deadlock it")
+    void compensatesBlockedWorker() throws Exception {
+        FutureTask<String> dependency = new FutureTask<>(() -> "dependency");
+
+        ForkJoinTask<String> waiting = pool.submit(() -> {
+            pool.execute(dependency); // queued behind this task, and the pool has a single thread
+            return ManagedBlocking.get(dependency);
+        });
+
+        // Without compensation the only worker would wait forever for a task it is blocking itself
+        assertEquals("dependency", waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("A latch counted down by a queued task releases the worker waiting on it")
+    void compensatesLatch() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        ForkJoinTask<Boolean> waiting = pool.submit(() -> {
+            pool.execute(latch::countDown);
+            ManagedBlocking.await(latch);
+            return true;
+        });
+
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Failures of the awaited future are rethrown as they are by Future.get()")
+    void rethrowsFailure() {
+        FutureTask<String> failing = new FutureTask<>(() -> {
+            throw new IllegalStateException("boom");
+        });
+        failing.run();
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> ManagedBlocking.get(failing));
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    @DisplayName("Sleeps for at least the given duration")
+    void sleeps() throws InterruptedException {
+        long start = System.nanoTime();
+        ManagedBlocking.sleep(Duration.ofMillis(50));
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+}
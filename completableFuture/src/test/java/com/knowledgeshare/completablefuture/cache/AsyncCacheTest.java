@@ -0,0 +1,150 @@
+package com.knowledgeshare.completablefuture.cache;
+
+import com.knowledgeshare.completablefuture.timeout.Timeouts;
+import com.knowledgeshare.completablefuture.timer.VirtualTimeScheduler;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    @DisplayName("Concurrent callers for the same key share the load that is already in flight")
+    void coalescesInFlightLoads() {
+        AsyncCache<String, Integer> cut = new AsyncCache<>(10, Duration.ofMinutes(1));
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+
+        CompletableFuture<Integer> first = cut.get("key", key -> load(pending));
+        CompletableFuture<Integer> second = cut.get("key", key -> load(pending));
+        pending.complete(42);
+
+        assertEquals(42, first.join().intValue());
+        assertEquals(42, second.join().intValue());
+        assertEquals(1, loads.get());
+        assertEquals(1, cut.stats().getCoalesced());
+
+        assertEquals(42, cut.get("key", key -> load(CompletableFuture.completedFuture(0))).join().intValue());
+        assertEquals(1, cut.stats().getHits());
+    }
+
+    @Test
+    @DisplayName("Failed loads are never cached")
+    void doesNotCacheFailures() {
+        AsyncCache<String, Integer> cut = new AsyncCache<>(10, Duration.ofMinutes(1));
+        CompletableFuture<Integer> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("Unavailable"));
+
+        assertThrows(CompletionException.class, () -> cut.get("key", key -> load(failed)).join());
+        assertEquals(0, cut.size());
+
+        assertEquals(1, cut.get("key", key -> load(CompletableFuture.completedFuture(1))).join().intValue());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("Cancelling one caller's future does not affect the others")
+    void cancellationIsIsolated() {
+        AsyncCache<String, Integer> cut = new AsyncCache<>(10, Duration.ofMinutes(1));
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+
+        CompletableFuture<Integer> first = cut.get("key", key -> load(pending));
+        CompletableFuture<Integer> second = cut.get("key", key -> load(pending));
+        first.cancel(true);
+        pending.complete(42);
+
+        assertEquals(42, second.join().intValue());
+        assertEquals(1, cut.size());
+    }
+
+    @Test
+    @DisplayName("Once every caller cancelled, the load itself is cancelled and the next caller starts a new one")
+    void cancelsLoadNobodyWaitsFor() {
+        AsyncCache<String, Integer> cut = new AsyncCache<>(10, Duration.ofMinutes(1));
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+
+        CompletableFuture<Integer> first = cut.get("key", key -> load(pending));
+        CompletableFuture<Integer> second = cut.get("key", key -> load(pending));
+        first.cancel(true);
+        assertFalse(pending.isCancelled()); // Someone is still waiting
+        second.cancel(true);
+
+        assertTrue(pending.isCancelled());
+        assertEquals(0, cut.size());
+        assertEquals(1, cut.get("key", key -> load(CompletableFuture.completedFuture(1))).join().intValue());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("Callers that time out give up on the load like callers that cancel")
+    void cancelsLoadEveryCallerTimedOut() {
+        VirtualTimeScheduler clock = new VirtualTimeScheduler();
+        Timeouts timeouts = new Timeouts(clock);
+        AsyncCache<String, Integer> cut = new AsyncCache<>(10, Duration.ofMinutes(1));
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+
+        CompletableFuture<Integer> first = timeouts.orTimeout(cut.get("key", key -> load(pending)), Duration.ofSeconds(1));
+        CompletableFuture<Integer> second = timeouts.orTimeout(cut.get("key", key -> load(pending)), Duration.ofSeconds(2));
+        clock.advanceBy(Duration.ofSeconds(1));
+        assertTrue(first.isCompletedExceptionally());
+        assertFalse(pending.isCancelled()); // The second caller is still waiting
+        clock.advanceBy(Duration.ofSeconds(1));
+
+        CompletionException exception = assertThrows(CompletionException.class, second::join);
+        assertTrue(exception.getCause() instanceof TimeoutException);
+        assertTrue(pending.isCancelled());
+        assertEquals(0, cut.size());
+    }
+
+    @Test
+    @DisplayName("Values expire after the time to live")
+    void expiresAfterTimeToLive() throws InterruptedException {
+        AsyncCache<String, Integer> cut = new AsyncCache<>(10, Duration.ofMillis(20));
+
+        cut.get("key", key -> load(CompletableFuture.completedFuture(1))).join();
+        TimeUnit.MILLISECONDS.sleep(40);
+        cut.get("key", key -> load(CompletableFuture.completedFuture(2))).join();
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cut.stats().getHits());
+    }
+
+    @Test
+    @DisplayName("The least recently used key is evicted once the cache is full")
+    void evictsLeastRecentlyUsed() {
+        AsyncCache<Integer, Integer> cut = new AsyncCache<>(2, Duration.ofMinutes(1));
+        Function<Integer, CompletableFuture<Integer>> loader = key -> load(CompletableFuture.completedFuture(key));
+
+        cut.get(1, loader);
+        cut.get(2, loader);
+        cut.get(1, loader); // 1 is now more recently used than 2
+        cut.get(3, loader);
+
+        assertEquals(2, cut.size());
+        assertEquals(1, cut.stats().getEvictions());
+        cut.get(1, loader);
+        assertEquals(3, loads.get());
+        cut.get(2, loader);
+        assertEquals(4, loads.get());
+        assertTrue(cut.stats().getHitRate() > 0);
+        assertFalse(cut.stats().getMissRate() == 0);
+    }
+
+    private CompletableFuture<Integer> load(CompletableFuture<Integer> result) {
+        loads.incrementAndGet();
+        return result;
+    }
+}
@@ -0,0 +1,152 @@
+package com.knowledgeshare.completablefuture.combinators;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FuturesTest {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("firstOf completes with the first result and cancels the others")
+    void firstOfCancelsLosers() {
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        CompletableFuture<String> slower = new CompletableFuture<>();
+        CompletableFuture<String> fast = new CompletableFuture<>();
+
+        CompletableFuture<String> result = Futures.firstOf(Arrays.asList(slow, slower, fast));
+        fast.complete("fast");
+
+        assertEquals("fast", result.join());
+        assertTrue(slow.isCancelled());
+        assertTrue(slower.isCancelled());
+    }
+
+    @Test
+    @DisplayName("Cancelling a future from supplyInterruptibly interrupts the thread running it")
+    void supplyInterruptiblyInterrupts() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<String> future = Futures.supplyInterruptibly(() -> {
+            started.countDown();
+            try {
+                TimeUnit.SECONDS.sleep(30);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "too late";
+        }, executor);
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        future.cancel(true);
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("firstOf of no futures fails right away instead of never completing")
+    void firstOfNothing() {
+        CompletableFuture<String> result = Futures.firstOf(Collections.<CompletableFuture<String>>emptyList());
+
+        CompletionException exception = assertThrows(CompletionException.class, result::join);
+        assertTrue(exception.getCause() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    @DisplayName("The losers of firstOf stop their blocking work when they come from supplyInterruptibly")
+    void firstOfStopsInterruptibleLosers() throws InterruptedException {
+        CountDownLatch loserInterrupted = new CountDownLatch(1);
+        CompletableFuture<String> loser = Futures.supplyInterruptibly(() -> {
+            try {
+                TimeUnit.SECONDS.sleep(30);
+            } catch (InterruptedException e) {
+                loserInterrupted.countDown();
+            }
+            return "loser";
+        }, executor);
+
+        String result = Futures.firstOf(Arrays.asList(loser, Futures.supplyInterruptibly(() -> "winner", executor))).join();
+
+        assertEquals("winner", result);
+        assertTrue(loserInterrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("allOf completes with the typed results in input order")
+    void allOfIsTyped() {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+
+        CompletableFuture<List<String>> result = Futures.allOf(Arrays.asList(first, second));
+        second.complete("second");
+        assertFalse(result.isDone());
+        first.complete("first");
+
+        assertEquals(Arrays.asList("first", "second"), result.join());
+    }
+
+    @Test
+    @DisplayName("allOfFailFast fails on the first exception and cancels the futures still running")
+    void allOfFailFastCancelsSiblings() {
+        CompletableFuture<String> failing = new CompletableFuture<>();
+        CompletableFuture<String> running = new CompletableFuture<>();
+
+        CompletableFuture<List<String>> result = Futures.allOfFailFast(Arrays.asList(failing, running));
+        failing.completeExceptionally(new IllegalStateException("Unavailable"));
+
+        assertTrue(result.isCompletedExceptionally());
+        assertTrue(running.isCancelled());
+
+        // Without fail fast the result waits for every future
+        CompletableFuture<String> stillRunning = new CompletableFuture<>();
+        assertFalse(Futures.allOf(Arrays.asList(failing, stillRunning)).isDone());
+    }
+
+    @Test
+    @DisplayName("inCompletionOrder delivers results in the order they finish")
+    void inCompletionOrder() {
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        CompletableFuture<String> fast = new CompletableFuture<>();
+        List<String> seen = new CopyOnWriteArrayList<>();
+
+        List<CompletableFuture<String>> ordered = Futures.inCompletionOrder(Arrays.asList(slow, fast));
+        Futures.onEachCompleted(Arrays.asList(slow, fast), (value, ex) -> seen.add(value));
+        fast.complete("fast");
+
+        assertEquals("fast", ordered.get(0).join());
+        assertFalse(ordered.get(1).isDone());
+
+        slow.complete("slow");
+        assertEquals("slow", ordered.get(1).join());
+        assertEquals(Arrays.asList("fast", "slow"), seen);
+    }
+}
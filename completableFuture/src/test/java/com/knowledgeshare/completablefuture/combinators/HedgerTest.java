@@ -0,0 +1,107 @@
+package com.knowledgeshare.completablefuture.combinators;
+
+import com.knowledgeshare.completablefuture.timer.HashedWheelTimer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HedgerTest {
+
+    private HashedWheelTimer timer;
+
+    @BeforeEach
+    void setUp() {
+        timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 64);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.close();
+    }
+
+    @Test
+    @DisplayName("A slow call gets a backup after the hedge delay and the slow attempt is cancelled")
+    void backupWinsOverSlowPrimary() {
+        Hedger cut = new Hedger(timer, 0.95, Duration.ofMillis(20), Duration.ofMillis(1), 100);
+        List<CompletableFuture<String>> attempts = new CopyOnWriteArrayList<>();
+
+        String result = cut.call(() -> {
+            // The primary hangs, the backup answers straight away
+            CompletableFuture<String> attempt = attempts.isEmpty()
+                    ? new CompletableFuture<>()
+                    : timer.delayed("backup", Duration.ofMillis(5));
+            attempts.add(attempt);
+            return attempt;
+        }).join();
+
+        assertEquals("backup", result);
+        assertEquals(1, cut.getHedges());
+        assertEquals(1, cut.getHedgeWins());
+        assertTrue(attempts.get(0).isCancelled());
+    }
+
+    @Test
+    @DisplayName("Calls faster than the hedge delay never send a backup")
+    void fastCallsAreNotHedged() {
+        Hedger cut = new Hedger(timer, 0.95, Duration.ofMillis(200), Duration.ofMillis(1), 100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        for (int i = 0; i < 20; i++) {
+            cut.call(() -> {
+                attempts.incrementAndGet();
+                return CompletableFuture.completedFuture("fast");
+            }).join();
+        }
+
+        assertEquals(20, attempts.get());
+        assertEquals(0, cut.getHedges());
+    }
+
+    @Test
+    @DisplayName("The hedge delay follows the observed latency percentile")
+    void hedgeDelayTracksPercentile() {
+        Hedger cut = new Hedger(timer, 0.5, Duration.ofSeconds(1), Duration.ofMillis(1), 64);
+
+        for (int i = 0; i < 64; i++) {
+            cut.call(() -> timer.delayed("value", Duration.ofMillis(10))).join();
+        }
+
+        long delayMillis = cut.currentHedgeDelay().toMillis();
+        assertTrue(delayMillis >= 5 && delayMillis < 100, "hedge delay was " + delayMillis + "ms");
+    }
+
+    @Test
+    @DisplayName("Calls the caller cancelled do not count as latency samples")
+    void callerCancellationIsNotSampled() {
+        Hedger cut = new Hedger(timer, 0.5, Duration.ofSeconds(1), Duration.ofMillis(1), 64);
+
+        for (int i = 0; i < 64; i++) {
+            cut.call(CompletableFuture::new).cancel(true); // Cancels the primary after next to no time
+        }
+
+        assertEquals(Duration.ofSeconds(1), cut.currentHedgeDelay());
+    }
+
+    @Test
+    @DisplayName("The call only fails once every attempt failed")
+    void failsWhenAllAttemptsFail() {
+        Hedger cut = new Hedger(timer, 0.95, Duration.ofMillis(10), Duration.ofMillis(1), 100);
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("Unavailable"));
+
+        assertThrows(CompletionException.class, () -> cut.call(() -> failed).join());
+    }
+}
@@ -1,143 +1,315 @@
 package com.knowledgeshare.completablefuture.examples;
 
+import com.knowledgeshare.completablefuture.combinators.Futures;
+import com.knowledgeshare.completablefuture.executor.ExecutorConfiguration;
+import com.knowledgeshare.completablefuture.executor.ExecutorProperties;
+import com.knowledgeshare.completablefuture.logging.StageLog;
+import com.knowledgeshare.completablefuture.resilience.CircuitBreaker;
+import com.knowledgeshare.completablefuture.timer.VirtualTimeScheduler;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ExamplesTest {
 
+    // Both executors and the timer run on a virtual clock, so the simulated 3 to 5 second calls take no real time and
+    // every run sees the same order. clock.elapsed() tells how long a call would have taken for real.
+    private VirtualTimeScheduler clock;
+    private StageLog stageLog;
     private Examples cut;
 
     @BeforeEach
     void setUp() {
-        cut = new Examples();
+        clock = new VirtualTimeScheduler();
+        stageLog = new StageLog(8192, 10, System.out);
+        cut = new Examples(clock, clock, clock, Duration.ofSeconds(12), stageLog);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clock.close();
+        stageLog.close(); // Writes out what the test logged
     }
 
     @Test
     @DisplayName("Blocks until the Future is complete")
-    void get() throws ExecutionException, InterruptedException {
-        cut.get();  // You will see that the test blocks forever, since the future is never completed
+    void get() {
+        // The future is never completed, so without a timeout this would block forever. Every wait in Examples is
+        // bounded by the request timeout, so the caller is released with a TimeoutException instead.
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> clock.run(cut::get));
+        assertTrue(exception.getCause() instanceof TimeoutException);
+        assertEquals(Duration.ofSeconds(12), clock.elapsed()); // Released exactly when the request timeout ran out
     }
 
     @Test
     @DisplayName("Way to manually complete a Future")
-    void complete() throws ExecutionException, InterruptedException {
+    void complete() throws Exception {
         // This can be used if you already know the result of the computation/function. This means the get() will never block.
-        cut.complete();
+        clock.run(() -> cut.complete());
     }
 
     @Test
     @DisplayName("Cancels the completion of the Future")
     void cancel() {
-        assertThrows(CancellationException.class, () -> cut.cancel());
+        assertThrows(CancellationException.class, () -> clock.run(cut::cancel));
         // When cancel is used you will receive a CancellationException
     }
 
     @Test
     @DisplayName("Used when you want to run some background task without returning a result")
-    void runAsync() throws ExecutionException, InterruptedException {
+    void runAsync() throws Exception {
         // Used to simply execute some code asynchronously
-        cut.runAsync(); // Used to execute some code asynchronously without returning the result
+        clock.run(() -> cut.runAsync()); // Used to execute some code asynchronously without returning the result
     }
 
     @Test
     @DisplayName("Used when you want to run some background task and return the result")
-    void supplyAsync() throws ExecutionException, InterruptedException {
-        cut.supplyAsync(); // Used to execute some code asynchronously and return the result
+    void supplyAsync() throws Exception {
+        clock.run(() -> cut.supplyAsync()); // Used to execute some code asynchronously and return the result
     }
 
     @Test
     @DisplayName("Use this to process and transform the result when it arrives")
-    void thenApplyCallback() throws ExecutionException, InterruptedException {
+    void thenApplyCallback() throws Exception {
         // Used for working with a result of the previous call
-        cut.thenApplyCallback("Almarie");
+        clock.run(() -> cut.thenApplyCallback("Almarie"));
     }
 
     @Test
     @DisplayName("Used for executing the callback on another thread")
-    void thenApplyAsync() throws ExecutionException, InterruptedException {
+    void thenApplyAsync() throws Exception {
         // Notice thenApply (the above test) executes on the same thread where supplyAsync is executed
 
         // To have more control over the thread that executes the callback you can use thenApplyAsync
         // You get Async variants of all thenXXXX methods
-        cut.thenApplyAsync("Almarie"); // This is confusing!!
+        clock.run(() -> cut.thenApplyAsync("Almarie")); // This is confusing!!
     }
 
     @Test
     @DisplayName("Used when you want to execute some piece of code after the Future completion without returning anything")
-    void thenAcceptCallback() throws ExecutionException, InterruptedException {
-        cut.thenAcceptCallback("Almarie");
+    void thenAcceptCallback() throws Exception {
+        clock.run(() -> cut.thenAcceptCallback("Almarie"));
     }
 
     @Test
     @DisplayName("Same as thenAccept(), but thenRun() does not have access to the Future’s result")
-    void thenRunCallback() throws ExecutionException, InterruptedException {
-        cut.thenRunCallback(5, 6);
+    void thenRunCallback() throws Exception {
+        clock.run(() -> cut.thenRunCallback(5, 6));
     }
 
     @Test
     @DisplayName("You can also create a sequence of transformations")
-    void thenApplyChainedCallbacks() throws ExecutionException, InterruptedException {
-        cut.thenApplyChainedCallbacks("Almarie");
+    void thenApplyChainedCallbacks() throws Exception {
+        clock.run(() -> cut.thenApplyChainedCallbacks("Almarie"));
+    }
+
+    @Test
+    @DisplayName("The same sequence of transformations with the synchronous steps fused into one")
+    void thenApplyChainedCallbacksFused() throws Exception {
+        clock.run(() -> cut.thenApplyChainedCallbacksFused("Almarie"));
+    }
+
+    @Test
+    @DisplayName("Records queue wait and run time per stage, and latency and thread hops per chain")
+    void thenApplyChainedCallbacksInstrumented() throws Exception {
+        clock.run(() -> cut.thenApplyChainedCallbacksInstrumented("Almarie"));
+
+        assertEquals(1, cut.stageMetrics().snapshot().getChains().get("thenApplyChainedCallbacks").getExecutions());
     }
 
     @Test
     @DisplayName("Used for combining two futures where one future is dependant on the other and flattening the result")
-    void thenComposeCallback() throws ExecutionException, InterruptedException {
+    void thenComposeCallback() throws Exception {
         // So, Rule of thumb here - If your callback function returns a CompletableFuture, and you want a flattened
         // result from the CompletableFuture chain (which in most cases you would), then use thenCompose()
-        cut.thenComposeCallback("Almarie");
+        clock.run(() -> cut.thenComposeCallback("Almarie"));
+    }
+
+    @Test
+    @DisplayName("Collapses the per user lookups of thenCompose into one bulk call per step")
+    void thenComposeBatchedCallback() throws Exception {
+        // Five users would normally mean ten remote calls, batching needs two and takes as long as a single user
+        clock.run(() -> cut.thenComposeBatchedCallback(Arrays.asList("Almarie", "Bongani", "Charlie", "Dineo", "Etienne")));
     }
 
     @Test
     @DisplayName("Used when you want futures to run independently and do something after both futures complete")
-    void thenCombineCallback() throws ExecutionException, InterruptedException {
+    void thenCombineCallback() throws Exception {
         // Assume you have a db table with user's weight and height, we can then calculate the user's BMI
-        cut.thenCombineCallBack(58611L);
+        clock.run(() -> cut.thenCombineCallBack(58611L));
+        // Both 5 second lookups overlap, one after the other would have taken 10 seconds
+        assertEquals(Duration.ofSeconds(5), clock.elapsed());
+    }
+
+    @Test
+    @DisplayName("When one of the combined futures fails the other one is cancelled instead of left running")
+    void thenCombineCallbackFailure() {
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> clock.run(() -> cut.thenCombineCallBack(0L)));
+        assertTrue(exception.getCause() instanceof IllegalArgumentException);
+        // Fails right away instead of after the 5 second height lookup, which the scope cancelled
+        assertEquals(Duration.ZERO, clock.elapsed());
+        assertEquals(0, clock.pendingTimeouts()); // Cancelling the scope's child reached the simulated call under the cache
+    }
+
+    @Test
+    @DisplayName("The same BMI calculation on plain doubles instead of boxed Double futures")
+    void thenCombineCallbackUnboxed() throws Exception {
+        clock.run(() -> cut.thenCombineCallBackUnboxed(58611L));
+        assertEquals(Duration.ofSeconds(5), clock.elapsed());
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> clock.run(() -> cut.thenCombineCallBackUnboxed(0L)));
+        assertTrue(exception.getCause() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    @DisplayName("Repeated lookups for the same user share the first call instead of starting new ones")
+    void cachedLookups() throws Exception {
+        clock.run(() -> cut.thenCombineCallBack(58611L));
+        clock.run(() -> cut.thenCombineCallBack(58611L)); // Notice no weight or height thread ids are printed, the results come from the cache
     }
 
     @Test
     @DisplayName("Used when you want a list of futures to run in parallel and do something after all futures complete")
-    void allOf() throws ExecutionException, InterruptedException {
-        cut.allOf();
+    void allOf() throws Exception {
+        clock.run(() -> cut.allOf());
     }
 
     @Test
     @DisplayName("Completes when any given future completes")
-    void anyOf() throws ExecutionException, InterruptedException {
-        cut.anyOf();
+    void anyOf() throws Exception {
+        clock.run(() -> cut.anyOf());
+    }
+
+    @Test
+    @DisplayName("A read slower than usual gets a backup on another replica and the slow read is cancelled")
+    void hedgedRead() {
+        CompletableFuture<String> read = cut.hedgedRead();
+
+        clock.advanceUntilIdle();
+
+        assertEquals("you?", read.getNow(null));
+        assertEquals(Duration.ofSeconds(7), clock.elapsed()); // 4 seconds of hedge delay and 3 on the fast replica
+        assertEquals(1, cut.replicaHedger().getHedgeWins());
+        assertEquals(0, clock.pendingTimeouts()); // The 10 second read was cancelled with its timer
+    }
+
+    @Test
+    @DisplayName("The fastest future wins, no matter the order the futures are passed in")
+    void anyOfOrdering() {
+        CompletableFuture<String> first = Futures.firstOf(Arrays.asList(cut.futureOne(), cut.futureTwo(), cut.futureThree()));
+
+        clock.advanceBy(Duration.ofMillis(2_999));
+        assertFalse(first.isDone());
+
+        clock.advanceBy(Duration.ofMillis(1)); // futureThree takes 3 seconds, futureTwo 4 and futureOne 5
+        assertEquals("you?", first.getNow(null));
+        assertEquals(0, clock.pendingTimeouts()); // The losers were cancelled and took their timers with them
+    }
+
+    @Test
+    @DisplayName("Streams the results of a large fan-out with bounded concurrency instead of creating every future up front")
+    void streamedFanOut() throws Exception {
+        // 10 users, 5 at a time, so two rounds of the 5 second lookup
+        clock.run(() -> cut.streamedFanOut(10, 5));
+        assertEquals(Duration.ofSeconds(10), clock.elapsed());
     }
 
     @Test
     @DisplayName("Gives you a chance to recover from errors generated from the original future in the callback chain")
-    void exceptionally() throws ExecutionException, InterruptedException {
+    void exceptionally() throws Exception {
         // Say we want to return some default value if an exception occurs while getting the user address based on a user id
 
         System.out.println("Valid user id:");
         System.out.println("--------------");
-        cut.exceptionally(5596L);
+        clock.run(() -> cut.exceptionally(5596L));
 
         System.out.println("\nInvalid user id:");
         System.out.println("----------------");
-        cut.exceptionally(0L);
+        clock.run(() -> cut.exceptionally(0L));
     }
 
     @Test
     @DisplayName("Used to recover from exceptions, but it is called whether or not an exception occurred")
-    void handle() throws ExecutionException, InterruptedException {
+    void handle() throws Exception {
         // Similar to exceptionally, but handle() will always execute and has access to the result
 
         System.out.println("Valid user id:");
         System.out.println("--------------");
-        cut.handle(5596L);
+        clock.run(() -> cut.handle(5596L));
 
         System.out.println("\nInvalid user id:");
         System.out.println("----------------");
-        cut.handle(0L);
+        clock.run(() -> cut.handle(0L));
+    }
+
+    @Test
+    @DisplayName("Looks up many users in one call, a failed lookup only falls back for its own user")
+    void handleAll() throws Exception {
+        List<Long> userIds = LongStream.rangeClosed(1, 1_000).boxed().collect(Collectors.toList());
+        userIds.set(500, 0L); // Invalid, gets "Not available" while the others get their address
+
+        clock.run(() -> cut.handleAll(userIds));
+
+        assertEquals(CircuitBreaker.State.CLOSED, cut.userAddressBreaker().getState()); // One failure in a thousand
+    }
+
+    @Test
+    @DisplayName("The bulk lookup is sized to the threads of the cpu pool, not to the processors")
+    void bulkLookupSizedToPool() {
+        ThreadPoolExecutor cpu = ExecutorConfiguration.newThreadPool("cpu", new ExecutorProperties.Pool(3, 3, 10));
+        try {
+            assertEquals(3, Examples.threadCount(cpu));
+            assertEquals(Runtime.getRuntime().availableProcessors(), Examples.threadCount(clock));
+        } finally {
+            cpu.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("A failing dependency opens the circuit breaker and later calls fall back without calling it")
+    void exceptionallyWithOpenCircuitBreaker() throws Exception {
+        cut.simulateUserAddressOutage(true);
+        for (int i = 0; i < 2; i++) {
+            clock.run(() -> cut.exceptionally(5596L)); // 3 failed attempts each, with the retries
+        }
+        assertEquals(CircuitBreaker.State.OPEN, cut.userAddressBreaker().getState());
+
+        // The service is back, but the lookup is not attempted until the breaker half-opens
+        cut.simulateUserAddressOutage(false);
+        long notPermitted = cut.userAddressBreaker().getNotPermitted();
+        CompletableFuture<String> address = cut.userAddress(5596L);
+        clock.advanceUntilIdle();
+        assertEquals("Not available", address.getNow(null));
+        assertEquals(notPermitted + 1, cut.userAddressBreaker().getNotPermitted());
+    }
+
+    @Test
+    @DisplayName("Invalid ids are the caller's mistake and do not open the circuit breaker for everybody else")
+    void invalidIdsDoNotOpenCircuitBreaker() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            clock.run(() -> cut.exceptionally(0L));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, cut.userAddressBreaker().getState());
+        CompletableFuture<String> address = cut.userAddress(5596L);
+        clock.advanceUntilIdle();
+        assertEquals("FNB Building, 1 Enterprise Rd, Fairland, Johannesburg, 2170", address.getNow(null));
     }
 }
\ No newline at end of file
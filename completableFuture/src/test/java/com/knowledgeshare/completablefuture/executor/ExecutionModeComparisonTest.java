@@ -0,0 +1,104 @@
+package com.knowledgeshare.completablefuture.executor;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Fires the same burst of blocking getUserId-style calls at the io executor in both modes and compares how many of
+ * them actually run at the same time.
+ */
+public class ExecutionModeComparisonTest {
+
+    private static final int CALLS = 5_000;
+    private static final long CALL_MILLIS = 200;
+
+    @Test
+    @DisplayName("The platform pool runs at most max-size calls at once and rejects what does not fit in its queue")
+    void platformThreads() {
+        ExecutorProperties.Pool io = new ExecutorProperties().getIo();
+        ExecutorService executor = ExecutorConfiguration.newThreadPool("io", io);
+
+        Burst burst = fire(executor);
+
+        assertTrue(burst.peakConcurrency <= io.getMaxSize(), burst::toString);
+        assertTrue(burst.rejected > 0, burst::toString);
+    }
+
+    @Test
+    @DisplayName("A virtual thread per task runs every call at once")
+    void virtualThreads() {
+        assumeTrue(VirtualThreads.isSupported(), "Virtual threads need Java 21, build with -Pjava21");
+        ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+
+        Burst burst = fire(executor);
+
+        assertEquals(0, burst.rejected, burst::toString);
+        assertEquals(CALLS, burst.completed, burst::toString);
+        assertTrue(burst.peakConcurrency > CALLS / 2, burst::toString);
+    }
+
+    private static Burst fire(ExecutorService executor) {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        int rejected = 0;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < CALLS; i++) {
+            try {
+                futures.add(CompletableFuture.supplyAsync(() -> getUserId(inFlight, peak), executor));
+            } catch (RejectedExecutionException e) {
+                rejected++;
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        executor.shutdown();
+
+        return new Burst(futures.size(), rejected, peak.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // Blocking style, as getUserId was written before the timer: the thread is held for the whole call
+    private static Long getUserId(AtomicInteger inFlight, AtomicInteger peak) {
+        peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            TimeUnit.MILLISECONDS.sleep(CALL_MILLIS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        return 147L;
+    }
+
+    private static final class Burst {
+
+        private final int completed;
+        private final int rejected;
+        private final int peakConcurrency;
+        private final long elapsedMillis;
+
+        private Burst(int completed, int rejected, int peakConcurrency, long elapsedMillis) {
+            this.completed = completed;
+            this.rejected = rejected;
+            this.peakConcurrency = peakConcurrency;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d completed, %d rejected, peak %d concurrent calls, %dms", completed, rejected, peakConcurrency, elapsedMillis);
+        }
+    }
+}
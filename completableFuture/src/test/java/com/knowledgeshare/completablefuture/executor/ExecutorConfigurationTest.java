@@ -0,0 +1,167 @@
+package com.knowledgeshare.completablefuture.executor;
+
+import com.knowledgeshare.completablefuture.blocking.BlockingDetector;
+import com.knowledgeshare.completablefuture.blocking.ManagedBlocking;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ExecutorConfigurationTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(ExecutorConfiguration.class)
+            .withPropertyValues(
+                    "examples.executor.mode=platform",
+                    "examples.executor.io.core-size=3",
+                    "examples.executor.io.max-size=5",
+                    "examples.executor.io.queue-capacity=7",
+                    "examples.executor.cpu.core-size=1",
+                    "examples.executor.cpu.max-size=1",
+                    "examples.executor.cpu.queue-capacity=1");
+
+    @Test
+    @DisplayName("Pools are sized from application properties and publish queue and thread gauges")
+    void sizedFromProperties() {
+        contextRunner.run(context -> {
+            ThreadPoolExecutor io = context.getBean(ExecutorConfiguration.IO_EXECUTOR, ThreadPoolExecutor.class);
+            assertEquals(3, io.getCorePoolSize());
+            assertEquals(5, io.getMaximumPoolSize());
+            assertEquals(7, io.getQueue().remainingCapacity());
+
+            MeterRegistry registry = context.getBean(MeterRegistry.class);
+            assertEquals(0.0, registry.get("executor.queue.depth").tag("name", "io").gauge().value());
+            assertEquals(0.0, registry.get("executor.active.threads").tag("name", "cpu").gauge().value());
+        });
+    }
+
+    @Test
+    @DisplayName("A saturated pool rejects new work instead of queueing it without bound")
+    void rejectsWhenSaturated() {
+        contextRunner.run(context -> {
+            ThreadPoolExecutor cpu = context.getBean(ExecutorConfiguration.CPU_EXECUTOR, ThreadPoolExecutor.class);
+            CountDownLatch release = new CountDownLatch(1);
+            Runnable blocked = () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+
+            cpu.execute(blocked); // occupies the only thread
+            cpu.execute(blocked); // fills the queue
+            assertThrows(RejectedExecutionException.class, () -> cpu.execute(blocked));
+            assertTrue(cpu.getThreadFactory() instanceof NamedThreadFactory);
+
+            release.countDown();
+        });
+    }
+
+    @Test
+    @DisplayName("Pool threads waiting in a managed block are made up for, so the task they wait for still runs")
+    void compensatesManagedBlocking() {
+        contextRunner.run(context -> {
+            ThreadPoolExecutor io = context.getBean(ExecutorConfiguration.IO_EXECUTOR, ThreadPoolExecutor.class);
+            CountDownLatch release = new CountDownLatch(1);
+            List<Future<?>> waiting = new ArrayList<>();
+
+            for (int i = 0; i < 5; i++) { // Every thread the pool may have waits, core and max alike
+                waiting.add(io.submit(() -> {
+                    ManagedBlocking.await(release);
+                    return null;
+                }));
+            }
+            // Without compensation this would sit in the queue behind the tasks waiting for it
+            io.execute(release::countDown);
+
+            for (Future<?> task : waiting) {
+                task.get(5, TimeUnit.SECONDS);
+            }
+            CompensatingThreadPoolExecutor pool = (CompensatingThreadPoolExecutor) io;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (pool.getCompensating() > 0 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(5); // The last waiter may not have given its extra thread back yet
+            }
+            assertEquals(0, pool.getCompensating());
+            assertEquals(3, io.getCorePoolSize());
+            assertEquals(5, io.getMaximumPoolSize());
+        });
+    }
+
+    @Test
+    @DisplayName("Blocking detection is off unless enabled, and then watches the pool threads")
+    void blockingDetection() {
+        contextRunner.run(context -> assertFalse(context.containsBean("blockingDetector")));
+
+        contextRunner.withPropertyValues("examples.executor.blocking-detection.enabled=true",
+                "examples.executor.blocking-detection.threshold=10ms").run(context -> {
+            BlockingDetector detector = context.getBean(BlockingDetector.class);
+            ThreadPoolExecutor io = context.getBean(ExecutorConfiguration.IO_EXECUTOR, ThreadPoolExecutor.class);
+            CountDownLatch release = new CountDownLatch(1);
+
+            io.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (detector.getReported() == 0 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+            release.countDown();
+
+            assertEquals(1, detector.getReported());
+        });
+    }
+
+    @Test
+    @DisplayName("In virtual mode the io executor still counts its tasks and reports blocking")
+    void virtualModeIsMonitored() {
+        assumeTrue(VirtualThreads.isSupported(), "Virtual threads need Java 21, build with -Pjava21");
+
+        contextRunner.withPropertyValues("examples.executor.mode=virtual",
+                "examples.executor.blocking-detection.enabled=true",
+                "examples.executor.blocking-detection.threshold=10ms").run(context -> {
+            BlockingDetector detector = context.getBean(BlockingDetector.class);
+            ExecutorService io = context.getBean(ExecutorConfiguration.IO_EXECUTOR, ExecutorService.class);
+            MeterRegistry registry = context.getBean(MeterRegistry.class);
+            CountDownLatch release = new CountDownLatch(1);
+
+            Future<?> task = io.submit(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (detector.getReported() == 0 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+            assertEquals(1.0, registry.get("executor.active.threads").tag("name", "io").gauge().value());
+            release.countDown();
+            task.get(5, TimeUnit.SECONDS);
+
+            assertEquals(1, detector.getReported());
+            assertEquals(1.0, registry.get("executor.completed.tasks").tag("name", "io").functionCounter().count());
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package com.knowledgeshare.completablefuture.instrumentation;
+
+import com.knowledgeshare.completablefuture.executor.NamedThreadFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StageMetricsTest {
+
+    private ExecutorService first;
+    private ExecutorService second;
+    private StageMetrics cut;
+
+    @BeforeEach
+    void setUp() {
+        first = Executors.newSingleThreadExecutor(new NamedThreadFactory("first"));
+        second = Executors.newSingleThreadExecutor(new NamedThreadFactory("second"));
+        cut = new StageMetrics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        first.shutdownNow();
+        second.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Records run time per stage and end-to-end latency per chain")
+    void recordsStageAndChainLatency() {
+        String result = cut.chain("greeting")
+                .supplyAsync("supply", () -> sleep(50, "Almarie"), first)
+                .thenApply("apply", name -> "Hello " + name)
+                .toCompletableFuture()
+                .join();
+
+        assertEquals("Hello Almarie", result);
+        StageMetrics.Snapshot snapshot = cut.snapshot();
+        assertTrue(snapshot.getStages().get("greeting/supply").getRunTime().getMax().toMillis() >= 45);
+        assertTrue(snapshot.getStages().get("greeting/apply").getRunTime().getMax().toMillis() < 45);
+        assertTrue(snapshot.getChains().get("greeting").getEndToEnd().getMax().toMillis() >= 45);
+        assertTrue(snapshot.toString().contains("stage greeting/apply"));
+    }
+
+    @Test
+    @DisplayName("Time spent in a busy executor's queue shows up as queue wait")
+    void recordsQueueWait() {
+        first.execute(() -> sleep(100, null)); // keeps the only thread busy
+
+        cut.chain("queued").supplyAsync("supply", () -> "value", first).toCompletableFuture().join();
+
+        assertTrue(cut.snapshot().getStages().get("queued/supply").getQueueWait().getMax().toMillis() >= 80);
+    }
+
+    @Test
+    @DisplayName("Counts how often a chain moves to a different thread")
+    void countsThreadHops() {
+        // Held until the whole chain is attached, otherwise thenApply may find supply done and run on the caller
+        CompletableFuture<Void> chainAttached = new CompletableFuture<>();
+        CompletableFuture<String> result = cut.chain("hops")
+                .supplyAsync("supply", () -> {
+                    chainAttached.join();
+                    return "value";
+                }, first)                                         // caller -> first
+                .thenApply("sameThread", value -> value)          // stays on first
+                .thenApplyAsync("otherPool", value -> value, second) // first -> second
+                .toCompletableFuture();
+        chainAttached.complete(null);
+        result.join();
+
+        assertEquals(2, cut.snapshot().getChains().get("hops").getMaxHops());
+    }
+
+    @Test
+    @DisplayName("thenCompose and thenCombine stages are timed until their inputs complete")
+    void composeAndCombine() {
+        StageMetrics.Chain chain = cut.chain("bmi");
+        Stage<Double> weight = chain.supplyAsync("weight", () -> 65.0, first);
+        Stage<Double> height = chain.supplyAsync("height", () -> 177.8, second)
+                .thenCompose("remoteCall", value -> CompletableFuture.supplyAsync(() -> sleep(50, value)));
+
+        Double bmi = weight.thenCombine("bmi", height, (w, h) -> w / ((h / 100) * (h / 100))).toCompletableFuture().join();
+
+        assertEquals(20.56, bmi, 0.01);
+        assertTrue(cut.snapshot().getStages().get("bmi/remoteCall").getRunTime().getMax().toMillis() >= 45);
+        assertEquals(1, cut.snapshot().getStages().get("bmi/bmi").getRunTime().getCount());
+    }
+
+    @Test
+    @DisplayName("Histogram percentiles are accurate to within one bucket")
+    void histogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertWithin(Duration.ofNanos(500_000), snapshot.getPercentile(0.5));
+        assertWithin(Duration.ofNanos(990_000), snapshot.getPercentile(0.99));
+        assertEquals(Duration.ofNanos(1_000_000), snapshot.getMax());
+        for (long value : new long[]{0, 7, 8, 9, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.upperBoundOf(index) >= value);
+        }
+    }
+
+    private static void assertWithin(Duration expected, Duration actual) {
+        double error = Math.abs(actual.toNanos() - expected.toNanos()) / (double) expected.toNanos();
+        assertTrue(error <= 0.125, "expected about " + expected + " but was " + actual);
+    }
+
+    private static <T> T sleep(long millis, T value) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,180 @@
+package com.knowledgeshare.completablefuture.logging;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StageLogTest {
+
+    @Test
+    @DisplayName("Writes events in the order they were logged, with the caller's thread id after the arguments")
+    void formatsInOrder() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long threadId = Thread.currentThread().getId();
+
+        try (StageLog stageLog = new StageLog(16, 10, new PrintStream(bytes, true))) {
+            stageLog.log("Main thread id: %s");
+            stageLog.log("Hello %s", "Almarie");
+            stageLog.log("%s + %s = %s", 5, 6, 11);
+            stageLog.log("User names %s thread id: %s", "[Almarie]");
+            stageLog.flush();
+
+            assertEquals(Arrays.asList("Main thread id: " + threadId, "Hello Almarie", "5 + 6 = 11",
+                    "User names [Almarie] thread id: " + threadId), lines(bytes));
+            assertEquals(4, stageLog.getWritten());
+        }
+    }
+
+    @Test
+    @DisplayName("Writes indexed, escaped and non-%s templates the same as String.format")
+    void formatsLikeStringFormat() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long threadId = Thread.currentThread().getId();
+
+        try (StageLog stageLog = new StageLog(16, 10, new PrintStream(bytes, true))) {
+            stageLog.log("Thread %2$s rated %1$s", 0.5);
+            stageLog.log("100%% of %s", (Object) null);
+            stageLog.log("%-8s|%.2f|%s", "Almarie", 0.5);
+            stageLog.log("%s %s %s %s", "a", "b", "c");
+            stageLog.flush();
+
+            assertEquals(Arrays.asList(String.format("Thread %2$s rated %1$s", 0.5, threadId),
+                    String.format("100%% of %s", null, threadId),
+                    String.format("%-8s|%.2f|%s", "Almarie", 0.5, threadId),
+                    String.format("%s %s %s %s", "a", "b", "c", threadId)), lines(bytes));
+        }
+    }
+
+    @Test
+    @DisplayName("Close writes out what is still in the buffer, events logged afterwards are dropped")
+    void closeDrains() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StageLog stageLog = new StageLog(1024, 10, new PrintStream(bytes, true));
+
+        for (int i = 0; i < 500; i++) {
+            stageLog.log("Event %s", i);
+        }
+        stageLog.close();
+        stageLog.log("Too late");
+
+        List<String> lines = lines(bytes);
+        assertEquals(500, lines.size());
+        assertEquals("Event 0", lines.get(0));
+        assertEquals("Event 499", lines.get(499));
+        assertEquals(1, stageLog.getDropped());
+    }
+
+    @Test
+    @DisplayName("A slow console samples and drops events instead of blocking the callers, and says so")
+    void overloadDoesNotBlock() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream slowConsole = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                bytes.write(b, off, len);
+            }
+        };
+
+        StageLog stageLog = new StageLog(4, 10, new PrintStream(slowConsole, true));
+        stageLog.log("First");
+        assertTrue(writing.await(5, TimeUnit.SECONDS)); // The writer is stuck on the console from now on
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            stageLog.log("Event %s", i);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)); // Never waited for the console
+        assertTrue(stageLog.getSampledOut() > 0);
+        assertTrue(stageLog.getDropped() > 0);
+
+        release.countDown();
+        stageLog.close();
+
+        assertEquals(1001, stageLog.getWritten() + stageLog.getSampledOut() + stageLog.getDropped());
+        assertTrue(lines(bytes).stream().anyMatch(line -> line.startsWith("Stage log overloaded: ")));
+    }
+
+    @Test
+    @DisplayName("An idle writer parks until the next event is logged instead of waking up on a timer")
+    void idleWriterParks() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (StageLog stageLog = new StageLog(16, 10, new PrintStream(bytes, true))) {
+            stageLog.log("First");
+            stageLog.flush();
+
+            Thread writer = null;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (writer == null && System.nanoTime() < deadline) {
+                writer = Thread.getAllStackTraces().keySet().stream()
+                        .filter(thread -> LockSupport.getBlocker(thread) == stageLog)
+                        .findFirst()
+                        .orElse(null);
+            }
+            assertNotNull(writer);
+            assertEquals(Thread.State.WAITING, writer.getState()); // Parked without a timeout
+
+            stageLog.log("Second");
+            stageLog.flush();
+
+            assertEquals(Arrays.asList("First", "Second"), lines(bytes));
+        }
+    }
+
+    @Test
+    @DisplayName("A template that does not match its arguments is written as is and does not stop the writer")
+    void badTemplate() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (StageLog stageLog = new StageLog(16, 10, new PrintStream(bytes, true))) {
+            stageLog.log("Rating %d", "not a number");
+            stageLog.log("Still %s", "logging");
+            stageLog.flush();
+
+            List<String> lines = lines(bytes);
+            assertTrue(lines.get(0).startsWith("Rating %d (could not format: "));
+            assertEquals("Still logging", lines.get(1));
+        }
+    }
+
+    @Test
+    @DisplayName("Rejects a buffer that cannot hold an event and a sample rate below one")
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new StageLog(1, 10, System.out));
+        assertThrows(IllegalArgumentException.class, () -> new StageLog(16, 0, System.out));
+    }
+
+    private static List<String> lines(ByteArrayOutputStream bytes) {
+        String output = bytes.toString();
+        assertFalse(output.isEmpty());
+        return Arrays.stream(output.split(System.lineSeparator())).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,125 @@
+package com.knowledgeshare.completablefuture.pipeline;
+
+import com.knowledgeshare.completablefuture.executor.NamedThreadFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PipelineTest {
+
+    private ExecutorService io;
+    private ExecutorService cpu;
+
+    @BeforeEach
+    void setUp() {
+        io = Executors.newSingleThreadExecutor(new NamedThreadFactory("io"));
+        cpu = Executors.newSingleThreadExecutor(new NamedThreadFactory("cpu"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        io.shutdownNow();
+        cpu.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Consecutive maps run back to back on the thread of the last boundary")
+    void fusesMapsOnOneThread() {
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Integer> remote = new CompletableFuture<>();
+        Pipeline<String, Integer> pipeline = Pipeline.<String>start()
+                .map(value -> record(threads, value.length()))
+                .thenCompose(length -> remote)
+                .map(value -> record(threads, value + 1))
+                .map(value -> record(threads, value * 2));
+
+        CompletableFuture<Integer> result = pipeline.runAsync("four", io);
+        while (remote.getNumberOfDependents() == 0) {
+            Thread.yield(); // wait for the pipeline to reach the remote call
+        }
+        CompletableFuture.runAsync(() -> remote.complete(10), cpu).join();
+
+        assertEquals(22, result.join().intValue());
+        assertEquals(3, threads.size());
+        assertTrue(threads.get(0).startsWith("io-"));
+        assertTrue(threads.get(1).startsWith("cpu-")); // the thread that completed the remote call
+        assertEquals(threads.get(1), threads.get(2));
+    }
+
+    @Test
+    @DisplayName("An async boundary moves the rest of the pipeline to its executor")
+    void asyncBoundarySwitchesExecutor() {
+        Pipeline<Integer, String> pipeline = Pipeline.<Integer>start()
+                .map(value -> value + 1)
+                .async(cpu)
+                .map(value -> Thread.currentThread().getName() + ":" + value);
+
+        assertTrue(pipeline.runAsync(1, io).join().matches("cpu-\\d+:2"));
+    }
+
+    @Test
+    @DisplayName("A failing step fails the result and skips the remaining steps")
+    void propagatesFailures() {
+        AtomicInteger laterSteps = new AtomicInteger();
+        IllegalStateException failure = new IllegalStateException("boom");
+        Pipeline<Integer, Integer> pipeline = Pipeline.<Integer>start()
+                .<Integer>thenCompose(value -> {
+                    CompletableFuture<Integer> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(failure);
+                    return failed;
+                })
+                .map(laterSteps::addAndGet);
+
+        CompletionException exception = assertThrows(CompletionException.class, () -> pipeline.runAsync(1, io).join());
+        assertSame(failure, exception.getCause());
+        assertEquals(0, laterSteps.get());
+    }
+
+    @Test
+    @DisplayName("Cancelling the result stops the pipeline at the next boundary")
+    void cancelSkipsRemainingSteps() {
+        AtomicInteger laterSteps = new AtomicInteger();
+        CompletableFuture<Integer> remote = new CompletableFuture<>();
+        Pipeline<Integer, Integer> pipeline = Pipeline.<Integer>start()
+                .thenCompose(value -> remote)
+                .map(laterSteps::addAndGet);
+
+        CompletableFuture<Integer> result = pipeline.runAsync(1, io);
+        result.cancel(false);
+        remote.complete(5);
+
+        assertEquals(0, laterSteps.get());
+    }
+
+    @Test
+    @DisplayName("Building a pipeline leaves the one it started from unchanged")
+    void isImmutable() {
+        Pipeline<Integer, Integer> base = Pipeline.<Integer>start().map(value -> value + 1);
+        Pipeline<Integer, Integer> doubled = base.map(value -> value * 2);
+
+        assertEquals(2, base.runAsync(1, io).join().intValue());
+        assertEquals(4, doubled.runAsync(1, io).join().intValue());
+        assertFalse(base == doubled);
+    }
+
+    private static <T> T record(List<String> threads, T value) {
+        threads.add(Thread.currentThread().getName());
+        return value;
+    }
+}
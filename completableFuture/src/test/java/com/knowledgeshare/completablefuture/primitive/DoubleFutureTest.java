@@ -0,0 +1,194 @@
+package com.knowledgeshare.completablefuture.primitive;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DoubleFutureTest {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Combines two values computed on other threads, like the BMI from weight and height")
+    void combinesAsyncValues() {
+        DoubleFuture weightInKg = DoubleFuture.supplyAsync(() -> 65.0, executor);
+        DoubleFuture heightInCm = DoubleFuture.supplyAsync(() -> 177.8, executor);
+
+        DoubleFuture bmi = weightInKg.thenCombine(heightInCm, (weight, height) -> weight / (height / 100 * height / 100));
+
+        assertEquals(20.56, bmi.join(), 0.01);
+    }
+
+    @Test
+    @DisplayName("Dependents added before and after completion run, in the order they were added")
+    void runsDependentsInOrder() {
+        DoubleFuture source = new DoubleFuture();
+        List<Double> seen = new ArrayList<>();
+        source.thenApply(value -> record(seen, value + 1));
+        source.thenApply(value -> record(seen, value + 2));
+
+        assertTrue(source.complete(1));
+        source.thenApply(value -> record(seen, value + 3));
+
+        assertEquals(Arrays.asList(2.0, 3.0, 4.0), seen);
+        assertFalse(source.complete(5)); // Already completed
+        assertEquals(1.0, source.getNow(0));
+    }
+
+    @Test
+    @DisplayName("A failure skips the functions and fails every dependent with the same exception")
+    void propagatesFailure() {
+        IllegalArgumentException failure = new IllegalArgumentException("User id cannot be less than 1");
+        DoubleFuture weightInKg = DoubleFuture.supplyAsync(() -> {
+            throw failure;
+        }, executor);
+        DoubleFuture heightInCm = new DoubleFuture(); // never completes, a failed first input does not wait for it
+
+        DoubleFuture bmi = weightInKg.thenCombine(heightInCm, (weight, height) -> 0).thenApply(value -> value * 2);
+
+        CompletionException exception = assertThrows(CompletionException.class, bmi::join);
+        assertSame(failure, exception.getCause());
+        assertTrue(bmi.isCompletedExceptionally());
+    }
+
+    @Test
+    @DisplayName("A function that throws fails the dependent future")
+    void failsWhenFunctionThrows() {
+        LongFuture rounded = DoubleFuture.completed(1.5).thenApplyToLong(value -> {
+            throw new IllegalStateException("boom");
+        });
+
+        CompletionException exception = assertThrows(CompletionException.class, rounded::join);
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    @DisplayName("Cancelling fails the future with a CancellationException")
+    void cancels() {
+        DoubleFuture future = new DoubleFuture();
+        DoubleFuture dependent = future.thenApply(value -> value);
+
+        assertTrue(future.cancel());
+
+        assertTrue(future.isCancelled());
+        assertThrows(CancellationException.class, dependent::join);
+    }
+
+    @Test
+    @DisplayName("Converts to and from CompletableFuture at the edges")
+    void interoperatesWithCompletableFuture() throws Exception {
+        CompletableFuture<Double> boxed = CompletableFuture.supplyAsync(() -> 65.0, executor);
+
+        CompletableFuture<String> result = DoubleFuture.from(boxed)
+                .thenApply(weight -> weight * 2)
+                .thenApplyToObj(weight -> weight + " kg");
+
+        assertEquals("130.0 kg", result.get(5, TimeUnit.SECONDS));
+        assertEquals(Double.valueOf(2.5), DoubleFuture.completed(2.5).toCompletableFuture().get());
+
+        CompletableFuture<Double> failed = CompletableFuture.supplyAsync(() -> {
+            throw new IllegalArgumentException("boom");
+        }, executor);
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> DoubleFuture.from(failed).toCompletableFuture().get(5, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof IllegalArgumentException); // Not wrapped in a CompletionException
+    }
+
+    @Test
+    @DisplayName("Combines correctly when both inputs complete at the same time on different threads")
+    void combinesUnderContention() throws Exception {
+        for (int i = 0; i < 10_000; i++) {
+            DoubleFuture first = new DoubleFuture();
+            DoubleFuture second = new DoubleFuture();
+            DoubleFuture sum = first.thenCombine(second, Double::sum);
+            double value = i;
+
+            executor.execute(() -> first.complete(value));
+            executor.execute(() -> second.complete(1));
+
+            assertEquals(i + 1, sum.join());
+        }
+    }
+
+    private static double record(List<Double> seen, double value) {
+        seen.add(value);
+        return value;
+    }
+    @Test
+    @DisplayName("Completing the head of a very long chain does not overflow the stack")
+    void deepChain() {
+        DoubleFuture head = new DoubleFuture();
+        DoubleFuture tail = head;
+        for (int i = 0; i < 20_000; i++) {
+            tail = tail.thenApply(value -> value + 1);
+        }
+
+        head.complete(0);
+
+        assertEquals(20_000, tail.join());
+    }
+
+    @Test
+    @DisplayName("Failing the head of a very long chain fails every stage without overflowing the stack")
+    void deepChainFailure() {
+        DoubleFuture head = new DoubleFuture();
+        DoubleFuture tail = head;
+        for (int i = 0; i < 20_000; i++) {
+            tail = tail.thenApply(value -> value + 1);
+        }
+
+        head.completeExceptionally(new IllegalStateException("boom"));
+
+        CompletionException exception = assertThrows(CompletionException.class, tail::join);
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    @DisplayName("A function can complete another future and wait for its dependents")
+    void joinInsideFunction() throws Exception {
+        DoubleFuture source = new DoubleFuture();
+        DoubleFuture result = source.thenApply(value -> {
+            DoubleFuture inner = new DoubleFuture();
+            DoubleFuture doubled = inner.thenApply(innerValue -> innerValue * 2);
+            inner.complete(value + 1);
+            return doubled.join();
+        });
+
+        // On another thread so a regression fails the test instead of hanging it
+        CompletableFuture<Double> joined = CompletableFuture.supplyAsync(() -> {
+            source.complete(1);
+            return result.join();
+        }, executor);
+
+        assertEquals(4.0, joined.get(5, TimeUnit.SECONDS).doubleValue());
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.knowledgeshare.completablefuture.primitive;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LongFutureTest {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Applies and combines long values without leaving the primitive chain")
+    void appliesAndCombines() {
+        LongFuture requests = LongFuture.supplyAsync(() -> 1_000, executor);
+        LongFuture failures = LongFuture.supplyAsync(() -> 50, executor);
+
+        DoubleFuture failureRate = requests.thenCombine(failures, (total, failed) -> failed * 10_000 / total)
+                .thenApplyToDouble(basisPoints -> basisPoints / 10_000.0);
+
+        assertEquals(0.05, failureRate.join());
+    }
+
+    @Test
+    @DisplayName("Converts to and from CompletableFuture at the edges")
+    void interoperatesWithCompletableFuture() throws Exception {
+        CompletableFuture<Long> userId = CompletableFuture.supplyAsync(() -> 147L, executor);
+
+        CompletableFuture<Long> next = LongFuture.from(userId).thenApply(id -> id + 1).toCompletableFuture();
+
+        assertEquals(Long.valueOf(148), next.get(5, TimeUnit.SECONDS));
+        assertEquals("147", LongFuture.completed(147).thenApplyToObj(Long::toString).get());
+    }
+
+    @Test
+    @DisplayName("A null value from the CompletableFuture fails instead of completing with 0")
+    void rejectsNull() {
+        LongFuture converted = LongFuture.from(CompletableFuture.completedFuture(null));
+
+        CompletionException exception = assertThrows(CompletionException.class, converted::join);
+        assertTrue(exception.getCause() instanceof NullPointerException);
+    }
+
+    @Test
+    @DisplayName("A failure of the second input fails the combination")
+    void failsWhenSecondFails() {
+        LongFuture first = LongFuture.completed(1);
+        LongFuture second = LongFuture.failed(new IllegalStateException("boom"));
+
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> first.thenCombine(second, Long::sum).join());
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+    }
+    @Test
+    @DisplayName("Completing the head of a very long chain does not overflow the stack")
+    void deepChain() {
+        LongFuture head = new LongFuture();
+        LongFuture tail = head;
+        for (int i = 0; i < 20_000; i++) {
+            tail = tail.thenApply(value -> value + 1);
+        }
+
+        head.complete(0);
+
+        assertEquals(20_000, tail.join());
+    }
+
+    @Test
+    @DisplayName("Failing the head of a very long chain fails every stage without overflowing the stack")
+    void deepChainFailure() {
+        LongFuture head = new LongFuture();
+        LongFuture tail = head;
+        for (int i = 0; i < 20_000; i++) {
+            tail = tail.thenApply(value -> value + 1);
+        }
+
+        head.completeExceptionally(new IllegalStateException("boom"));
+
+        CompletionException exception = assertThrows(CompletionException.class, tail::join);
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    @DisplayName("A function can complete another future and wait for its dependents")
+    void joinInsideFunction() throws Exception {
+        LongFuture source = new LongFuture();
+        LongFuture result = source.thenApply(value -> {
+            LongFuture inner = new LongFuture();
+            LongFuture doubled = inner.thenApply(innerValue -> innerValue * 2);
+            inner.complete(value + 1);
+            return doubled.join();
+        });
+
+        // On another thread so a regression fails the test instead of hanging it
+        CompletableFuture<Long> joined = CompletableFuture.supplyAsync(() -> {
+            source.complete(1L);
+            return result.join();
+        }, executor);
+
+        assertEquals(4L, joined.get(5, TimeUnit.SECONDS).longValue());
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.knowledgeshare.completablefuture.resilience;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveBulkheadTest {
+
+    @Test
+    @DisplayName("Calls over the limit are queued and start as permits free up")
+    void queuesCallsOverTheLimit() {
+        AdaptiveBulkhead cut = new AdaptiveBulkhead("test", 2, 1, 10, Duration.ofSeconds(1), 0.5, 10);
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(cut.call(() -> {
+                CompletableFuture<String> call = new CompletableFuture<>();
+                calls.add(call);
+                return call;
+            }));
+        }
+
+        assertEquals(2, calls.size());
+        assertEquals(2, cut.getInFlight());
+        assertEquals(1, cut.getQueued());
+
+        calls.get(0).complete("first");
+        assertEquals(3, calls.size()); // the queued call started
+        assertEquals("first", results.get(0).join());
+        assertFalse(results.get(2).isDone());
+    }
+
+    @Test
+    @DisplayName("Cancelling a call in flight cancels it and hands its permit to the next queued call")
+    void cancellationReleasesPermit() {
+        AdaptiveBulkhead cut = new AdaptiveBulkhead("test", 1, 1, 10, Duration.ofSeconds(1), 0.5, 10);
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> next = new CompletableFuture<>();
+
+        CompletableFuture<String> result = cut.call(() -> call);
+        CompletableFuture<String> queued = cut.call(() -> next);
+        result.cancel(true);
+
+        assertTrue(call.isCancelled());
+        assertEquals(1, cut.getInFlight()); // The queued call got the permit
+        assertEquals(0, cut.getQueued());
+        assertEquals(1, cut.getLimit()); // The cancelled call counts as neither a fast nor a slow answer
+        next.complete("next");
+        assertEquals("next", queued.join());
+    }
+
+    @Test
+    @DisplayName("Once the queue is full new calls are rejected straight away")
+    void rejectsWhenSaturated() {
+        AdaptiveBulkhead cut = new AdaptiveBulkhead("test", 1, 1, 10, Duration.ofSeconds(1), 0.5, 1);
+
+        cut.call(CompletableFuture::new);
+        cut.call(CompletableFuture::new);
+        CompletableFuture<Object> rejected = cut.call(CompletableFuture::new);
+
+        CompletionException exception = assertThrows(CompletionException.class, rejected::join);
+        assertTrue(exception.getCause() instanceof BulkheadFullException);
+        assertEquals(1, cut.getRejected());
+    }
+
+    @Test
+    @DisplayName("Queued callers that time out leave the queue, so they do not get later calls rejected")
+    void abandonedCallersLeaveTheQueue() {
+        AdaptiveBulkhead cut = new AdaptiveBulkhead("test", 1, 1, 10, Duration.ofSeconds(1), 0.5, 2);
+        cut.call(CompletableFuture::new); // Holds the only permit
+
+        List<CompletableFuture<Object>> queued = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            queued.add(cut.call(CompletableFuture::new));
+        }
+        queued.forEach(future -> future.completeExceptionally(new TimeoutException())); // What Timeouts.orTimeout does
+
+        assertEquals(0, cut.getQueued());
+        CompletableFuture<Object> next = cut.call(CompletableFuture::new);
+        assertFalse(next.isDone()); // Queued, not rejected
+        assertEquals(1, cut.getQueued());
+        assertEquals(0, cut.getRejected());
+    }
+
+    @Test
+    @DisplayName("Slow answers and timeouts shrink the limit")
+    void slowAnswersShrinkTheLimit() {
+        AdaptiveBulkhead cut = new AdaptiveBulkhead("test", 10, 2, 10, Duration.ofMillis(10), 0.5, 10);
+
+        cut.call(() -> CompletableFuture.supplyAsync(() -> sleep(30))).join();
+        assertEquals(5, cut.getLimit());
+
+        CompletableFuture<String> timedOut = new CompletableFuture<>();
+        timedOut.completeExceptionally(new TimeoutException());
+        assertThrows(CompletionException.class, () -> cut.call(() -> timedOut).join());
+        assertEquals(2, cut.getLimit()); // 2.5, but never below the minimum of 2
+    }
+
+    @Test
+    @DisplayName("Fast answers grow the limit while it is in use")
+    void fastAnswersGrowTheLimit() {
+        AdaptiveBulkhead cut = new AdaptiveBulkhead("test", 2, 1, 4, Duration.ofSeconds(1), 0.5, 100);
+
+        for (int round = 0; round < 20; round++) {
+            List<CompletableFuture<String>> calls = new ArrayList<>();
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(cut.call(() -> {
+                    CompletableFuture<String> call = new CompletableFuture<>();
+                    calls.add(call);
+                    return call;
+                }));
+            }
+            while (results.stream().anyMatch(result -> !result.isDone())) {
+                new ArrayList<>(calls).forEach(call -> call.complete("done"));
+            }
+        }
+
+        assertEquals(4, cut.getLimit());
+        assertEquals(0, cut.getInFlight());
+    }
+
+    private static String sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        return "slow";
+    }
+}
@@ -0,0 +1,165 @@
+package com.knowledgeshare.completablefuture.resilience;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CircuitBreakerTest {
+
+    @Test
+    @DisplayName("The breaker opens once the failure rate reaches the threshold")
+    void opensOnFailureRate() {
+        CircuitBreaker cut = new CircuitBreaker("test", 10, 4, 0.5, Duration.ofMinutes(1), 1);
+
+        cut.call(() -> CompletableFuture.completedFuture("ok"));
+        cut.call(() -> CompletableFuture.completedFuture("ok"));
+        cut.call(() -> failed());
+        assertEquals(CircuitBreaker.State.CLOSED, cut.getState()); // below the minimum number of calls
+
+        cut.call(() -> failed());
+        assertEquals(CircuitBreaker.State.OPEN, cut.getState());
+    }
+
+    @Test
+    @DisplayName("Exceptions the failure predicate rejects, like caller errors, do not open the breaker")
+    void ignoresUnrecordedExceptions() {
+        CircuitBreaker cut = new CircuitBreaker("test", 2, 2, 0.5, Duration.ofMinutes(1), 1,
+                ex -> !(ex instanceof IllegalArgumentException));
+
+        for (int i = 0; i < 4; i++) {
+            CompletableFuture<String> result = cut.call(() -> CompletableFuture.supplyAsync(() -> {
+                throw new IllegalArgumentException("Invalid id"); // Wrapped in a CompletionException by supplyAsync
+            }));
+            assertThrows(CompletionException.class, result::join);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, cut.getState());
+
+        cut.call(() -> failed());
+        cut.call(() -> failed());
+        assertEquals(CircuitBreaker.State.OPEN, cut.getState());
+    }
+
+    @Test
+    @DisplayName("An open breaker fails calls without running them")
+    void shortCircuitsWhenOpen() {
+        CircuitBreaker cut = new CircuitBreaker("test", 2, 2, 0.5, Duration.ofMinutes(1), 1);
+        cut.call(() -> failed());
+        cut.call(() -> failed());
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> result = cut.call(() -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("ok");
+        });
+
+        CompletionException exception = assertThrows(CompletionException.class, result::join);
+        assertTrue(exception.getCause() instanceof CallNotPermittedException);
+        assertEquals(0, calls.get());
+        assertEquals(1, cut.getNotPermitted());
+    }
+
+    @Test
+    @DisplayName("After the open duration trial calls decide whether the breaker closes or opens again")
+    void halfOpenTrialCalls() throws InterruptedException {
+        CircuitBreaker cut = new CircuitBreaker("test", 2, 2, 0.5, Duration.ofMillis(50), 2);
+        List<String> transitions = new ArrayList<>();
+        cut.addListener((name, from, to) -> transitions.add(from + "->" + to));
+
+        cut.call(() -> failed());
+        cut.call(() -> failed());
+        TimeUnit.MILLISECONDS.sleep(60);
+
+        cut.call(() -> failed());
+        assertEquals(CircuitBreaker.State.OPEN, cut.getState());
+        TimeUnit.MILLISECONDS.sleep(60);
+
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        cut.call(() -> first);
+        cut.call(() -> second);
+        // Only two trial calls are let through while half-open
+        assertThrows(CompletionException.class, () -> cut.call(() -> CompletableFuture.completedFuture("ok")).join());
+
+        first.complete("ok");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, cut.getState());
+        second.complete("ok");
+        assertEquals(CircuitBreaker.State.CLOSED, cut.getState());
+
+        assertEquals(5, transitions.size());
+        assertEquals("CLOSED->OPEN", transitions.get(0));
+        assertEquals("OPEN->HALF_OPEN", transitions.get(1));
+        assertEquals("HALF_OPEN->OPEN", transitions.get(2));
+        assertEquals("OPEN->HALF_OPEN", transitions.get(3));
+        assertEquals("HALF_OPEN->CLOSED", transitions.get(4));
+    }
+
+    @Test
+    @DisplayName("Calls started before the breaker opened do not decide the trial when they answer late")
+    void ignoresOutcomesFromEarlierStates() throws InterruptedException {
+        CircuitBreaker cut = new CircuitBreaker("test", 2, 2, 0.5, Duration.ofMillis(50), 1);
+        CompletableFuture<String> slowSuccess = new CompletableFuture<>();
+        CompletableFuture<String> slowFailure = new CompletableFuture<>();
+        cut.call(() -> slowSuccess);
+        cut.call(() -> slowFailure);
+        cut.call(() -> failed());
+        cut.call(() -> failed());
+        assertEquals(CircuitBreaker.State.OPEN, cut.getState());
+        TimeUnit.MILLISECONDS.sleep(60);
+
+        CompletableFuture<String> trial = new CompletableFuture<>();
+        cut.call(() -> trial);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, cut.getState());
+
+        slowSuccess.complete("ok"); // Would close the breaker if it counted as the trial
+        assertEquals(CircuitBreaker.State.HALF_OPEN, cut.getState());
+        slowFailure.completeExceptionally(new IllegalStateException("down")); // Would reopen it
+        assertEquals(CircuitBreaker.State.HALF_OPEN, cut.getState());
+
+        trial.complete("ok");
+        assertEquals(CircuitBreaker.State.CLOSED, cut.getState());
+    }
+
+    @Test
+    @DisplayName("A trial call that never answers is given up after the open duration instead of keeping the breaker half-open")
+    void givesUpOnStuckTrialCalls() throws InterruptedException {
+        CircuitBreaker cut = new CircuitBreaker("test", 2, 2, 0.5, Duration.ofMillis(50), 1);
+        List<String> transitions = new ArrayList<>();
+        cut.addListener((name, from, to) -> transitions.add(from + "->" + to));
+        cut.call(() -> failed());
+        cut.call(() -> failed());
+        TimeUnit.MILLISECONDS.sleep(60);
+
+        CompletableFuture<String> stuck = new CompletableFuture<>();
+        cut.call(() -> stuck); // Never completes
+        TimeUnit.MILLISECONDS.sleep(60);
+
+        assertThrows(CompletionException.class, () -> cut.call(() -> CompletableFuture.completedFuture("ok")).join());
+        assertEquals(CircuitBreaker.State.OPEN, cut.getState());
+        TimeUnit.MILLISECONDS.sleep(60);
+
+        assertEquals("ok", cut.call(() -> CompletableFuture.completedFuture("ok")).join()); // A fresh trial
+        assertEquals(CircuitBreaker.State.CLOSED, cut.getState());
+        stuck.completeExceptionally(new IllegalStateException("down")); // Too late to count
+        assertEquals(CircuitBreaker.State.CLOSED, cut.getState());
+        assertEquals(Arrays.asList("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN", "OPEN->HALF_OPEN",
+                "HALF_OPEN->CLOSED"), transitions);
+    }
+
+    private static CompletableFuture<String> failed() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalStateException("down"));
+        return future;
+    }
+}
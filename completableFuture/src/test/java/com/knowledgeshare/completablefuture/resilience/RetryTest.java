@@ -0,0 +1,100 @@
+package com.knowledgeshare.completablefuture.resilience;
+
+import com.knowledgeshare.completablefuture.timer.DelayScheduler;
+import com.knowledgeshare.completablefuture.timer.HashedWheelTimer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RetryTest {
+
+    private DelayScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 64);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.close();
+    }
+
+    @Test
+    @DisplayName("Transient failures are retried until the call succeeds")
+    void retriesUntilSuccess() {
+        Retry cut = new Retry(scheduler, 5, Duration.ofMillis(5), Duration.ofMillis(20), 2.0, ex -> true);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = cut.call(() -> attempts.incrementAndGet() < 3 ? failed(new IllegalStateException("flaky"))
+                : CompletableFuture.completedFuture("ok")).join();
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, cut.getRetries());
+    }
+
+    @Test
+    @DisplayName("The last failure is returned once the attempts run out")
+    void givesUpAfterMaxAttempts() {
+        Retry cut = new Retry(scheduler, 3, Duration.ofMillis(5), Duration.ofMillis(20), 2.0, ex -> true);
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = cut.call(() -> failed(new IllegalStateException("attempt " + attempts.incrementAndGet())));
+
+        CompletionException exception = assertThrows(CompletionException.class, result::join);
+        assertEquals("attempt 3", exception.getCause().getMessage());
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    @DisplayName("Failures rejected by the predicate are not retried")
+    void doesNotRetryNonRetryableFailures() {
+        Retry cut = new Retry(scheduler, 5, Duration.ofMillis(5), Duration.ofMillis(20), 2.0,
+                ex -> !(ex instanceof IllegalArgumentException));
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = cut.call(() -> {
+            attempts.incrementAndGet();
+            return failed(new IllegalArgumentException("bad input"));
+        });
+
+        CompletionException exception = assertThrows(CompletionException.class, result::join);
+        assertTrue(exception.getCause() instanceof IllegalArgumentException);
+        assertEquals(1, attempts.get());
+        assertEquals(0, cut.getRetries());
+    }
+
+    @Test
+    @DisplayName("Cancelling the result stops the pending retry")
+    void cancelStopsRetries() throws InterruptedException {
+        Retry cut = new Retry(scheduler, 5, Duration.ofMillis(200), Duration.ofMillis(200), 1.0, ex -> true);
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = cut.call(() -> {
+            attempts.incrementAndGet();
+            return failed(new IllegalStateException("down"));
+        });
+        result.cancel(false);
+        TimeUnit.MILLISECONDS.sleep(300);
+
+        assertEquals(1, attempts.get());
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable ex) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(ex);
+        return future;
+    }
+}
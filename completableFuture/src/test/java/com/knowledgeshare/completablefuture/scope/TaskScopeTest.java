@@ -0,0 +1,151 @@
+package com.knowledgeshare.completablefuture.scope;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TaskScopeTest {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("A failing child cancels its siblings and interrupts their threads")
+    void siblingFailureInterruptsChildren() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        try (TaskScope scope = new TaskScope(executor)) {
+            CompletableFuture<String> blocking = scope.fork(() -> block(started, interrupted));
+            started.await();
+
+            CompletableFuture<String> failing = new CompletableFuture<>();
+            scope.forkAsync(() -> failing);
+            failing.completeExceptionally(new IllegalStateException("boom"));
+
+            assertTrue(blocking.isCancelled());
+            assertTrue(scope.isShutdown());
+        }
+
+        assertTrue(interrupted.get());
+    }
+
+    @Test
+    @DisplayName("Cancelling a bound parent shuts the scope down")
+    void parentCancellationInterruptsChildren() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        try (TaskScope scope = new TaskScope(executor)) {
+            CompletableFuture<String> blocking = scope.fork(() -> block(started, interrupted));
+            CompletableFuture<Integer> parent = scope.bind(blocking.thenApply(String::length));
+            started.await();
+
+            parent.cancel(true);
+
+            assertTrue(blocking.isCancelled());
+        }
+
+        assertTrue(interrupted.get());
+    }
+
+    @Test
+    @DisplayName("close() returns only once every forked task has left its thread")
+    void closeWaitsForTasksToStop() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+
+        try (TaskScope scope = new TaskScope(executor)) {
+            scope.fork(() -> {
+                running.incrementAndGet();
+                started.countDown();
+                try {
+                    TimeUnit.SECONDS.sleep(10);
+                } catch (InterruptedException e) {
+                    // Slow to react to the interrupt, close() must still wait for it
+                    busyWait(50);
+                } finally {
+                    running.decrementAndGet();
+                }
+                return null;
+            });
+            started.await();
+        }
+
+        assertEquals(0, running.get());
+    }
+
+    @Test
+    @DisplayName("Children forked after shutdown never start")
+    void forkAfterShutdownIsCancelled() {
+        AtomicBoolean called = new AtomicBoolean();
+        TaskScope scope = new TaskScope(executor);
+        scope.shutdown();
+
+        CompletableFuture<String> forked = scope.fork(() -> {
+            called.set(true);
+            return "value";
+        });
+        CompletableFuture<String> forkedAsync = scope.forkAsync(() -> {
+            called.set(true);
+            return CompletableFuture.completedFuture("value");
+        });
+        scope.close();
+
+        assertTrue(forked.isCancelled());
+        assertTrue(forkedAsync.isCancelled());
+        assertFalse(called.get());
+    }
+
+    @Test
+    @DisplayName("Children that succeed leave the scope running")
+    void successfulChildrenDoNotShutDown() {
+        try (TaskScope scope = new TaskScope(executor)) {
+            CompletableFuture<Integer> first = scope.fork(() -> 1);
+            CompletableFuture<Integer> second = scope.forkAsync(() -> CompletableFuture.completedFuture(2));
+
+            assertEquals(3, first.thenCombine(second, Integer::sum).join().intValue());
+            assertFalse(scope.isShutdown());
+        }
+    }
+
+    private static String block(CountDownLatch started, AtomicBoolean interrupted) {
+        started.countDown();
+        try {
+            TimeUnit.SECONDS.sleep(10);
+            return "done";
+        } catch (InterruptedException e) {
+            interrupted.set(true);
+            return "interrupted";
+        }
+    }
+
+    private static void busyWait(long millis) {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (System.nanoTime() < end) {
+            Thread.yield();
+        }
+    }
+}
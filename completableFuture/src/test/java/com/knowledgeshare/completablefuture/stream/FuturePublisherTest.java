@@ -0,0 +1,186 @@
+package com.knowledgeshare.completablefuture.stream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FuturePublisherTest {
+
+    @Test
+    @DisplayName("Calls are only started for results the subscriber asked for")
+    void startsCallsOnDemand() {
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+        FuturePublisher<Integer, String> cut = new FuturePublisher<>(Arrays.asList(1, 2, 3, 4), key -> {
+            CompletableFuture<String> call = new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        }, 10);
+        RecordingSubscriber<String> subscriber = new RecordingSubscriber<>();
+
+        cut.subscribe(subscriber);
+        assertEquals(0, calls.size());
+
+        subscriber.subscription.request(2);
+        assertEquals(2, calls.size());
+
+        calls.get(1).complete("two");
+        assertEquals(Collections.singletonList("two"), subscriber.values);
+        assertEquals(2, calls.size()); // one result delivered, one still outstanding, no new demand
+
+        subscriber.subscription.request(2);
+        assertEquals(4, calls.size());
+        calls.get(0).complete("one");
+        calls.get(2).complete("three");
+        calls.get(3).complete("four");
+
+        assertEquals(Arrays.asList("two", "one", "three", "four"), subscriber.values);
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    @DisplayName("No more than the maximum number of calls run at once, however large the source and the demand")
+    void boundsConcurrencyOverALargeSource() {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Iterable<Integer> keys = () -> IntStream.range(0, 1_000_000).iterator();
+        FuturePublisher<Integer, Integer> cut = new FuturePublisher<>(keys, key -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                running.decrementAndGet();
+                return key;
+            }, executor);
+        }, 16);
+        CountingSubscriber subscriber = new CountingSubscriber();
+
+        cut.subscribe(subscriber);
+        subscriber.done.join();
+        executor.shutdownNow();
+
+        assertEquals(1_000_000, subscriber.count.get());
+        assertTrue(maxRunning.get() <= 16);
+    }
+
+    @Test
+    @DisplayName("A failed call fails the stream and cancels the calls still in flight")
+    void failsFastOnError() {
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        CompletableFuture<String> failing = new CompletableFuture<>();
+        FuturePublisher<Integer, String> cut = new FuturePublisher<>(Arrays.asList(1, 2, 3), key -> key == 1 ? slow : failing, 2);
+        RecordingSubscriber<String> subscriber = new RecordingSubscriber<>();
+        cut.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        IllegalStateException failure = new IllegalStateException("boom");
+        failing.completeExceptionally(failure);
+
+        assertSame(failure, subscriber.error);
+        assertTrue(slow.isCancelled());
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    @DisplayName("Cancelling the subscription cancels the calls in flight and stops all signals")
+    void cancelStopsTheStream() throws InterruptedException {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        FuturePublisher<Integer, String> cut = new FuturePublisher<>(Arrays.asList(1, 2), key -> call, 1);
+        RecordingSubscriber<String> subscriber = new RecordingSubscriber<>();
+        cut.subscribe(subscriber);
+        subscriber.subscription.request(2);
+
+        subscriber.subscription.cancel();
+        TimeUnit.MILLISECONDS.sleep(10);
+
+        assertTrue(call.isCancelled());
+        assertTrue(subscriber.values.isEmpty());
+        assertNull(subscriber.error);
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    @DisplayName("Requesting zero or fewer results is an error")
+    void rejectsNonPositiveDemand() {
+        FuturePublisher<Integer, Integer> cut = new FuturePublisher<>(Arrays.asList(1, 2), CompletableFuture::completedFuture, 1);
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>();
+        cut.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    private static class RecordingSubscriber<T> implements Subscriber<T> {
+
+        private final List<T> values = new ArrayList<>();
+        private Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T value) {
+            values.add(value);
+        }
+
+        @Override
+        public void onError(Throwable ex) {
+            error = ex;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static class CountingSubscriber implements Subscriber<Integer> {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private Subscription subscription;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(64);
+        }
+
+        @Override
+        public void onNext(Integer value) {
+            count.incrementAndGet();
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable ex) {
+            done.completeExceptionally(ex);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.knowledgeshare.completablefuture.timeout;
+
+import com.knowledgeshare.completablefuture.timer.HashedWheelTimer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimeoutsTest {
+
+    private HashedWheelTimer timer;
+    private Timeouts cut;
+
+    @BeforeEach
+    void setUp() {
+        timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 64);
+        cut = new Timeouts(timer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.close();
+    }
+
+    @Test
+    @DisplayName("A future that never completes fails with a TimeoutException")
+    void orTimeout() {
+        CompletableFuture<String> future = cut.orTimeout(new CompletableFuture<>(), Duration.ofMillis(50));
+
+        CompletionException exception = assertThrows(CompletionException.class, future::join);
+        assertTrue(exception.getCause() instanceof TimeoutException);
+    }
+
+    @Test
+    @DisplayName("The timer entry is released as soon as the future completes on its own")
+    void completionCancelsTimeout() {
+        CompletableFuture<String> future = cut.orTimeout(new CompletableFuture<>(), Duration.ofSeconds(30));
+        assertEquals(1, timer.pendingTimeouts());
+
+        future.complete("done");
+
+        assertEquals(0, timer.pendingTimeouts());
+        assertEquals("done", future.join());
+    }
+
+    @Test
+    @DisplayName("A future that never completes falls back to the given value")
+    void completeOnTimeout() {
+        CompletableFuture<String> future = cut.completeOnTimeout(new CompletableFuture<>(), "fallback", Duration.ofMillis(50));
+
+        assertEquals("fallback", future.join());
+    }
+
+    @Test
+    @DisplayName("Each composed stage only gets the budget the previous stages left over")
+    void deadlinePropagatesThroughCompose() {
+        Deadline deadline = Deadline.after(Duration.ofMillis(300));
+        CompletableFuture<String> first = timer.delayed("first", Duration.ofMillis(200));
+
+        // On its own the second stage would fit in 300ms, but only ~100ms of the budget is left
+        CompletableFuture<String> result = cut.orTimeout(first, deadline)
+                .thenCompose(cut.within(deadline, value -> timer.delayed(value + " second", Duration.ofMillis(250))));
+
+        CompletionException exception = assertThrows(CompletionException.class, result::join);
+        assertTrue(exception.getCause() instanceof TimeoutException);
+    }
+
+    @Test
+    @DisplayName("A stage is not started at all when the deadline already passed")
+    void expiredDeadlineSkipsNextStage() throws InterruptedException {
+        Deadline deadline = Deadline.after(Duration.ofMillis(1));
+        TimeUnit.MILLISECONDS.sleep(5);
+        AtomicBoolean called = new AtomicBoolean();
+
+        CompletableFuture<String> result = CompletableFuture.completedFuture("value")
+                .thenCompose(cut.within(deadline, value -> {
+                    called.set(true);
+                    return CompletableFuture.completedFuture(value);
+                }));
+
+        assertThrows(CompletionException.class, result::join);
+        assertFalse(called.get());
+    }
+}
@@ -0,0 +1,118 @@
+package com.knowledgeshare.completablefuture.timer;
+
+import com.knowledgeshare.completablefuture.executor.NamedThreadFactory;
+import com.knowledgeshare.completablefuture.timeout.Timeouts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HashedWheelTimerTest {
+
+    private HashedWheelTimer timer;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 64);
+        executor = Executors.newFixedThreadPool(2, new NamedThreadFactory("completion"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Completes the future only after the delay has passed")
+    void completesAfterDelay() {
+        long start = System.nanoTime();
+
+        String result = timer.delayed("done", Duration.ofMillis(100)).join();
+
+        assertEquals("done", result);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 95);
+    }
+
+    @Test
+    @DisplayName("Delays longer than one rotation of the wheel still complete on time")
+    void delaysLongerThanOneRotation() {
+        long start = System.nanoTime();
+
+        timer.delayed("done", Duration.ofMillis(700)).join(); // 64 ticks of 5ms is only 320ms
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 695);
+    }
+
+    @Test
+    @DisplayName("Cancelling the future frees its slot in the wheel")
+    void cancellationRemovesTimeout() {
+        CompletableFuture<String> future = timer.delayed("never", Duration.ofSeconds(30));
+        assertEquals(1, timer.pendingTimeouts());
+
+        future.cancel(true);
+
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test
+    @DisplayName("Closing the timer fails the futures still waiting on it instead of leaving them pending forever")
+    void closeFailsPendingFutures() {
+        CompletableFuture<String> delayed = timer.delayed("never", Duration.ofSeconds(30));
+        CompletableFuture<String> delayedOnExecutor = timer.delayed("never", Duration.ofSeconds(30), executor);
+        CompletableFuture<String> supplied = timer.supplyDelayed(() -> "never", Duration.ofSeconds(30), executor);
+        CompletableFuture<String> bounded = new Timeouts(timer).orTimeout(new CompletableFuture<>(), Duration.ofSeconds(30));
+
+        timer.close();
+
+        for (CompletableFuture<String> future : Arrays.asList(delayed, delayedOnExecutor, supplied, bounded)) {
+            CompletionException exception = assertThrows(CompletionException.class, future::join);
+            assertTrue(exception.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(0, timer.pendingTimeouts());
+        assertThrows(IllegalStateException.class, () -> timer.delayed("late", Duration.ofMillis(1)));
+    }
+
+    @Test
+    @DisplayName("Tens of thousands of simulated calls can be in flight on two completion threads")
+    void manyInFlightCallsOnFewThreads() {
+        int calls = 50_000;
+        Set<String> completionThreads = ConcurrentHashMap.newKeySet();
+        long start = System.nanoTime();
+
+        List<CompletableFuture<Integer>> futures = IntStream.range(0, calls)
+                .mapToObj(i -> timer.delayed(i, Duration.ofMillis(500), executor)
+                        .whenComplete((result, ex) -> completionThreads.add(Thread.currentThread().getName())))
+                .collect(Collectors.toList());
+        assertTrue(timer.pendingTimeouts() > calls / 2, "calls should be waiting concurrently, not one after the other");
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Blocking sleeps on a 2 thread pool would need 50_000 * 500ms / 2, i.e. hours
+        assertTrue(elapsedMillis < 10_000, "took " + elapsedMillis + "ms");
+        assertTrue(completionThreads.size() <= 2);
+        assertFalse(completionThreads.stream().anyMatch(name -> name.startsWith("wheel-timer")));
+        assertEquals(calls - 1, futures.get(calls - 1).join().intValue());
+    }
+}
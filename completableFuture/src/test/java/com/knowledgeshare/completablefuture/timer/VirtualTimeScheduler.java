@@ -0,0 +1,294 @@
+package com.knowledgeshare.completablefuture.timer;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link DelayScheduler} and {@link Executor} on a virtual clock, so tests exercise delays without waiting for them.
+ * <p>
+ * Nothing runs on its own. Executed tasks are queued and scheduled tasks fire only when the test moves the clock:
+ * {@link #runUntilIdle()} runs the queued tasks, {@link #advanceBy(Duration)} also fires every timer that falls due,
+ * each with the clock set to its deadline, and {@link #advanceUntilIdle()} keeps jumping to the next timer until
+ * there is nothing left to do. Tasks run one at a time on the thread that drives the clock, in submission order, and
+ * timers due at the same instant fire in the order they were scheduled, so every run of a test sees the same order.
+ * <p>
+ * Code that blocks the calling thread until a result arrives, like the {@code Examples} methods, is run with
+ * {@link #run(Block)}: the block runs on its own thread while the calling thread drives the clock. Time only moves on
+ * when the block is parked in {@code get()} or {@code join()} of a {@code CompletableFuture} that is still incomplete
+ * and no tasks are queued, i.e. when only a timer can release it. That is decided from the state of the future, not
+ * from how long the block has been quiet, so a slow machine sees the same order as a fast one. Waits on anything else
+ * (latches, monitors, sleeps) never move the clock, and a task that really blocks blocks the clock with it.
+ * <p>
+ * Only one thread may drive the clock at a time.
+ */
+public class VirtualTimeScheduler implements DelayScheduler, Executor {
+
+    private static final long POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Object lock = new Object();
+    private final Queue<Runnable> tasks = new ArrayDeque<>(); // guarded by lock
+    private final PriorityQueue<VirtualTimeout> timers = new PriorityQueue<>(); // guarded by lock
+    private long sequence; // guarded by lock
+    private boolean closed; // guarded by lock
+    private volatile long nowNanos;
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (lock) {
+            if (closed) {
+                throw new RejectedExecutionException("Scheduler is closed");
+            }
+            tasks.add(task);
+        }
+    }
+
+    @Override
+    public Timeout schedule(Runnable task, Runnable onClose, long delay, TimeUnit unit) {
+        synchronized (lock) {
+            if (closed) {
+                throw new RejectedExecutionException("Scheduler is closed");
+            }
+            VirtualTimeout timeout = new VirtualTimeout(task, onClose, nowNanos + Math.max(0, unit.toNanos(delay)), sequence++);
+            timers.add(timeout);
+            return timeout;
+        }
+    }
+
+    /**
+     * Virtual time that has passed since the scheduler was created.
+     */
+    public Duration elapsed() {
+        return Duration.ofNanos(nowNanos);
+    }
+
+    public int pendingTimeouts() {
+        synchronized (lock) {
+            return (int) timers.stream().filter(timeout -> !timeout.isCancelled()).count();
+        }
+    }
+
+    /**
+     * Runs queued tasks, and the tasks they queue, until there are none left. The clock does not move.
+     */
+    public void runUntilIdle() {
+        while (runNextTask()) {
+            // keep going
+        }
+    }
+
+    /**
+     * Moves the clock forward by {@code duration}, firing every timer that falls due on the way.
+     */
+    public void advanceBy(Duration duration) {
+        long target = nowNanos + duration.toNanos();
+        runUntilIdle();
+        while (fireNextTimer(target)) {
+            runUntilIdle();
+        }
+        nowNanos = Math.max(nowNanos, target);
+    }
+
+    /**
+     * Runs tasks and fires timers, jumping the clock from one timer to the next, until nothing is left.
+     */
+    public void advanceUntilIdle() {
+        runUntilIdle();
+        while (fireNextTimer(Long.MAX_VALUE)) {
+            runUntilIdle();
+        }
+    }
+
+    /**
+     * Runs {@code block} on a separate thread and drives the clock from the calling thread until it returns, then
+     * rethrows whatever it threw. Timers still pending afterwards stay pending.
+     */
+    public void run(Block block) throws Exception {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread caller = new Thread(() -> {
+            try {
+                block.run();
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        }, "virtual-time-caller");
+        caller.setDaemon(true);
+        caller.start();
+
+        while (caller.isAlive()) {
+            if (runNextTask()) {
+                continue;
+            }
+            // Tasks are checked after the wait: the block queues its tasks before it parks, never while it is parked
+            if (waitsForIncompleteFuture(caller) && !hasTasks() && fireNextTimer(Long.MAX_VALUE)) {
+                continue;
+            }
+            LockSupport.parkNanos(POLL_NANOS); // The block is still working, or is being woken up
+        }
+        caller.join();
+
+        Throwable thrown = failure.get();
+        if (thrown instanceof Exception) {
+            throw (Exception) thrown;
+        }
+        if (thrown instanceof Error) {
+            throw (Error) thrown;
+        }
+    }
+
+    /**
+     * Drops every queued task, runs the {@code onClose} action of every pending timer and rejects new ones.
+     */
+    @Override
+    public void close() {
+        List<VirtualTimeout> pending;
+        synchronized (lock) {
+            closed = true;
+            tasks.clear();
+            pending = new ArrayList<>(timers);
+            timers.clear();
+        }
+        pending.forEach(VirtualTimeout::close);
+    }
+
+    private boolean runNextTask() {
+        Runnable task;
+        synchronized (lock) {
+            task = tasks.poll();
+        }
+        if (task == null) {
+            return false;
+        }
+
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            // Like a pool thread, a failing task does not stop the ones after it
+        } finally {
+            Thread.interrupted(); // Clear an interrupt aimed at the task, e.g. by cancel(true), before the next one runs
+        }
+        return true;
+    }
+
+    private boolean fireNextTimer(long limitNanos) {
+        VirtualTimeout timeout;
+        synchronized (lock) {
+            while (!timers.isEmpty() && timers.peek().isCancelled()) {
+                timers.poll();
+            }
+            if (timers.isEmpty() || timers.peek().deadlineNanos > limitNanos) {
+                return false;
+            }
+            timeout = timers.poll();
+            nowNanos = Math.max(nowNanos, timeout.deadlineNanos);
+        }
+
+        timeout.fire();
+        return true;
+    }
+
+    private boolean hasTasks() {
+        synchronized (lock) {
+            return !tasks.isEmpty();
+        }
+    }
+
+    // A thread that was just woken still shows as parked until it gets a cpu. CompletableFuture parks its waiters on a
+    // ManagedBlocker that turns releasable when the future completes, before the waiter is woken, so a wake-up in
+    // progress is never taken for a wait
+    private static boolean waitsForIncompleteFuture(Thread thread) {
+        Thread.State state = thread.getState();
+        if (state != Thread.State.WAITING && state != Thread.State.TIMED_WAITING) {
+            return false;
+        }
+        Object blocker = LockSupport.getBlocker(thread);
+        return blocker instanceof ForkJoinPool.ManagedBlocker && !((ForkJoinPool.ManagedBlocker) blocker).isReleasable();
+    }
+
+    /**
+     * A block of code for {@link #run(Block)}, which may throw anything.
+     */
+    public interface Block {
+
+        void run() throws Exception;
+    }
+
+    private static final class VirtualTimeout implements Timeout, Comparable<VirtualTimeout> {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final Runnable onClose;
+        private final long deadlineNanos;
+        private final long sequence;
+        private volatile int state = PENDING;
+
+        private VirtualTimeout(Runnable task, Runnable onClose, long deadlineNanos, long sequence) {
+            this.task = task;
+            this.onClose = onClose;
+            this.deadlineNanos = deadlineNanos;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public synchronized boolean cancel() {
+            if (state != PENDING) {
+                return false;
+            }
+            state = CANCELLED;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        private void fire() {
+            synchronized (this) {
+                if (state != PENDING) {
+                    return;
+                }
+                state = EXPIRED;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Same as HashedWheelTimer, one failing task does not affect the others
+            }
+        }
+
+        private void close() {
+            if (!cancel()) {
+                return;
+            }
+            try {
+                onClose.run();
+            } catch (RuntimeException e) {
+                // Same as fire()
+            }
+        }
+
+        @Override
+        public int compareTo(VirtualTimeout other) {
+            int byDeadline = Long.compare(deadlineNanos, other.deadlineNanos);
+            return byDeadline != 0 ? byDeadline : Long.compare(sequence, other.sequence);
+        }
+    }
+}
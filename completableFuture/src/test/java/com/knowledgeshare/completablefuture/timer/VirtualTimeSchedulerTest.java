@@ -0,0 +1,150 @@
+package com.knowledgeshare.completablefuture.timer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VirtualTimeSchedulerTest {
+
+    private VirtualTimeScheduler cut;
+
+    @BeforeEach
+    void setUp() {
+        cut = new VirtualTimeScheduler();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cut.close();
+    }
+
+    @Test
+    @DisplayName("Timers fire in deadline order, and in scheduling order when they are due at the same time")
+    void firesInDeadlineOrder() {
+        List<String> fired = new ArrayList<>();
+        cut.schedule(() -> fired.add("c"), 3, TimeUnit.SECONDS);
+        cut.schedule(() -> fired.add("a"), 1, TimeUnit.SECONDS);
+        cut.schedule(() -> fired.add("b1"), 2, TimeUnit.SECONDS);
+        cut.schedule(() -> fired.add("b2"), 2, TimeUnit.SECONDS);
+
+        cut.advanceBy(Duration.ofSeconds(2));
+        assertEquals(Arrays.asList("a", "b1", "b2"), fired);
+        assertEquals(Duration.ofSeconds(2), cut.elapsed());
+
+        cut.advanceUntilIdle();
+        assertEquals(Arrays.asList("a", "b1", "b2", "c"), fired);
+        assertEquals(Duration.ofSeconds(3), cut.elapsed());
+    }
+
+    @Test
+    @DisplayName("A timer sees the clock at its own deadline and can schedule more work on the way")
+    void timersScheduledByTimersFireInTheSameAdvance() {
+        List<Duration> firedAt = new ArrayList<>();
+        cut.schedule(() -> {
+            firedAt.add(cut.elapsed());
+            cut.execute(() -> cut.schedule(() -> firedAt.add(cut.elapsed()), 1, TimeUnit.SECONDS));
+        }, 1, TimeUnit.SECONDS);
+
+        cut.advanceBy(Duration.ofSeconds(5));
+
+        assertEquals(Arrays.asList(Duration.ofSeconds(1), Duration.ofSeconds(2)), firedAt);
+        assertEquals(Duration.ofSeconds(5), cut.elapsed());
+    }
+
+    @Test
+    @DisplayName("Executed tasks wait for the test to run them, in submission order")
+    void executesTasksOnDemand() {
+        List<Integer> ran = new ArrayList<>();
+        cut.execute(() -> ran.add(1));
+        cut.execute(() -> ran.add(2));
+        assertTrue(ran.isEmpty());
+
+        cut.runUntilIdle();
+
+        assertEquals(Arrays.asList(1, 2), ran);
+        assertEquals(Duration.ZERO, cut.elapsed());
+    }
+
+    @Test
+    @DisplayName("Cancelled timers never fire")
+    void cancelledTimersDoNotFire() {
+        CompletableFuture<String> future = cut.delayed("value", Duration.ofSeconds(1));
+        future.cancel(false);
+
+        cut.advanceUntilIdle();
+
+        assertEquals(0, cut.pendingTimeouts());
+        assertEquals(Duration.ZERO, cut.elapsed());
+    }
+
+    @Test
+    @DisplayName("Blocking code is driven by moving the clock whenever it waits for a timer")
+    void runDrivesBlockingCode() throws Exception {
+        cut.run(() -> {
+            String first = cut.supplyDelayed(() -> "first", Duration.ofSeconds(3), cut).get();
+            String second = cut.delayed(first + " second", Duration.ofSeconds(2), cut).get();
+            assertEquals("first second", second);
+        });
+
+        assertEquals(Duration.ofSeconds(5), cut.elapsed());
+    }
+
+    @Test
+    @DisplayName("Waiting on futures that queued tasks complete never moves the clock, however slow the block wakes up")
+    void runOnlyMovesTimeForTimers() throws Exception {
+        CompletableFuture<String> timer = cut.delayed("fired", Duration.ofSeconds(1));
+
+        cut.run(() -> {
+            for (int i = 0; i < 1000; i++) {
+                CompletableFuture.supplyAsync(() -> "hop", cut).get();
+                assertFalse(timer.isDone());
+            }
+        });
+
+        assertEquals(Duration.ZERO, cut.elapsed());
+        assertEquals(1, cut.pendingTimeouts());
+    }
+
+    @Test
+    @DisplayName("Simulates millions of delayed calls in a fraction of the time one of them takes for real")
+    void stress() {
+        Random random = new Random(42);
+        AtomicLong completed = new AtomicLong();
+        AtomicLong outOfOrder = new AtomicLong();
+        long[] lastCompletedAt = {0};
+
+        // Rounds of 100 000 concurrent calls keep the memory flat, each call takes up to 10 virtual seconds
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 100_000; i++) {
+                Duration latency = Duration.ofMillis(1 + random.nextInt(10_000));
+                cut.delayed(latency, latency, cut).thenAccept(value -> {
+                    long now = cut.elapsed().toNanos();
+                    if (now < lastCompletedAt[0]) {
+                        outOfOrder.incrementAndGet();
+                    }
+                    lastCompletedAt[0] = now;
+                    completed.incrementAndGet();
+                });
+            }
+            cut.advanceUntilIdle();
+        }
+
+        assertEquals(2_000_000, completed.get());
+        assertEquals(0, outOfOrder.get());
+        assertFalse(cut.elapsed().compareTo(Duration.ofSeconds(200)) > 0);
+    }
+}
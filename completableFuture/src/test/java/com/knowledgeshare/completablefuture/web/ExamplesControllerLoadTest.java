@@ -0,0 +1,108 @@
+package com.knowledgeshare.completablefuture.web;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the real application on a random port with only {@value #SERVLET_THREADS} servlet threads and sends it far more
+ * concurrent requests than that. Each request takes 5 seconds, so if the handlers held their servlet thread the
+ * requests would be served {@value #SERVLET_THREADS} at a time and take minutes.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "server.tomcat.max-threads=" + ExamplesControllerLoadTest.SERVLET_THREADS)
+public class ExamplesControllerLoadTest {
+
+    static final int SERVLET_THREADS = 4;
+    private static final int REQUESTS = 200;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    @DisplayName("Serves many times more concurrent requests than there are servlet threads")
+    void concurrencyAboveServletThreads() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(REQUESTS);
+        try {
+            long start = System.nanoTime();
+            List<Future<long[]>> responses = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                responses.add(clients.submit(() -> {
+                    long sent = System.nanoTime();
+                    assertEquals("How are you?", get("/greeting"));
+                    return new long[]{sent, System.nanoTime()};
+                }));
+            }
+
+            List<long[]> intervals = new ArrayList<>();
+            for (Future<long[]> response : responses) {
+                intervals.add(response.get(60, TimeUnit.SECONDS));
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            int peakConcurrency = peakConcurrency(intervals);
+            String summary = String.format("%s requests on %s servlet threads in %sms, up to %s in flight at once",
+                    REQUESTS, SERVLET_THREADS, elapsedMillis, peakConcurrency);
+
+            // Served one batch of SERVLET_THREADS after the other this would take REQUESTS / SERVLET_THREADS * 5 seconds
+            assertTrue(elapsedMillis < 15_000, summary);
+            assertTrue(peakConcurrency >= 10 * SERVLET_THREADS, summary);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        try {
+            assertEquals(200, connection.getResponseCode());
+            try (InputStream body = connection.getInputStream()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[256];
+                for (int read; (read = body.read(buffer)) != -1; ) {
+                    bytes.write(buffer, 0, read);
+                }
+                return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // The most requests that were sent and not yet answered at the same moment
+    private static int peakConcurrency(List<long[]> intervals) {
+        List<long[]> events = new ArrayList<>();
+        for (long[] interval : intervals) {
+            events.add(new long[]{interval[0], 1});
+            events.add(new long[]{interval[1], -1});
+        }
+        events.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+        int inFlight = 0;
+        int peak = 0;
+        for (long[] event : events) {
+            inFlight += event[1];
+            peak = Math.max(peak, inFlight);
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,92 @@
+package com.knowledgeshare.completablefuture.web;
+
+import com.knowledgeshare.completablefuture.examples.Examples;
+import com.knowledgeshare.completablefuture.resilience.CallNotPermittedException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@WebMvcTest(value = ExamplesController.class, properties = "examples.web.bmi-timeout=100ms")
+public class ExamplesControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private Examples examples;
+
+    @Test
+    @DisplayName("The request is started asynchronously and answered once the future completes")
+    void answersWhenFutureCompletes() throws Exception {
+        CompletableFuture<Double> creditRating = new CompletableFuture<>();
+        when(examples.creditRating("Mike")).thenReturn(creditRating);
+
+        MvcResult started = mockMvc.perform(get("/credit-ratings/Mike"))
+                .andExpect(request().asyncStarted()) // The servlet thread has already returned
+                .andReturn();
+        creditRating.complete(10.5);
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().string("10.5"));
+    }
+
+    @Test
+    @DisplayName("Failures are mapped to a status code")
+    void mapsFailures() throws Exception {
+        CompletableFuture<Double> invalidUser = new CompletableFuture<>();
+        invalidUser.completeExceptionally(new IllegalArgumentException("User id cannot be less than 1"));
+        when(examples.bmi(0L)).thenReturn(invalidUser);
+        CompletableFuture<String> breakerOpen = new CompletableFuture<>();
+        breakerOpen.completeExceptionally(new CallNotPermittedException("Circuit breaker userAddress is OPEN"));
+        when(examples.userAddress(1L)).thenReturn(breakerOpen);
+
+        mockMvc.perform(asyncDispatch(mockMvc.perform(get("/bmi/0")).andReturn()))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("User id cannot be less than 1"));
+        mockMvc.perform(asyncDispatch(mockMvc.perform(get("/addresses/1")).andReturn()))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    @DisplayName("A request that outlives its endpoint's timeout gets a 504 and its future is cancelled")
+    void timesOut() throws Exception {
+        CompletableFuture<Double> neverCompletes = new CompletableFuture<>();
+        when(examples.bmi(58611L)).thenReturn(neverCompletes);
+
+        MvcResult started = mockMvc.perform(get("/bmi/58611"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // MockMvc has no container to run the timeout, so the async listeners are told by hand
+        MockAsyncContext asyncContext = (MockAsyncContext) started.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isGatewayTimeout())
+                .andExpect(content().string("Not completed within PT0.1S"));
+        assertTrue(neverCompletes.isCancelled());
+    }
+}